@@ -0,0 +1,239 @@
+package alanna.salamander.data.benchmark;
+
+import alanna.salamander.data.datasource.DataSourceRefresher;
+import alanna.salamander.data.datasource.DynamicDataSource;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.util.ReflectionUtils;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DynamicDataSource热切换的压测
+ * <p>
+ * 以内嵌H2作为数据库，大量线程(可选虚拟线程)循环getConnection并执行一次查询，
+ * 运行期间按固定间隔通过DataSourceRefresher切换连接池，
+ * 输出获取连接耗时的p50/p99/p999、错误数以及旧连接池的关闭耗时(HdrHistogram)。
+ * <p>
+ * 参数均为系统属性：
+ * <ul>
+ *     <li>threads: 并发数，默认200</li>
+ *     <li>virtual: 是否使用虚拟线程，默认true，JDK不支持时退回平台线程</li>
+ *     <li>duration: 运行秒数，默认30</li>
+ *     <li>swaps: 切换次数，默认5</li>
+ *     <li>pool-size: 每个连接池的最大连接数，默认20</li>
+ *     <li>hold-millis: 每次持有连接的毫秒数，默认1</li>
+ *     <li>shutdown-max-retry-times: 同salamander.data.dynamic-datasource.shutdown-max-retry-times，默认10</li>
+ *     <li>hgrm: 获取连接耗时分布的输出文件，默认不输出</li>
+ * </ul>
+ *
+ * @author alanna
+ * @since 0.1
+ */
+public class DynamicDataSourceLoadHarness {
+
+    private static final String JDBC_URL = "jdbc:h2:mem:salamander_load;DB_CLOSE_DELAY=-1";
+
+    /**
+     * 切换后该时长内的获取耗时单独统计，单位毫秒
+     */
+    private static final long SWAP_WINDOW_MILLIS = 1000;
+
+    private final int threads = Integer.getInteger("threads", 200);
+
+    private final boolean virtual = Boolean.parseBoolean(System.getProperty("virtual", "true"));
+
+    private final long durationMillis = TimeUnit.SECONDS.toMillis(Long.getLong("duration", 30L));
+
+    private final int swaps = Integer.getInteger("swaps", 5);
+
+    private final int poolSize = Integer.getInteger("pool-size", 20);
+
+    private final long holdMillis = Long.getLong("hold-millis", 1L);
+
+    private final int shutdownMaxRetryTimes = Integer.getInteger("shutdown-max-retry-times", 10);
+
+    private final String hgrm = System.getProperty("hgrm");
+
+    /**
+     * 获取连接耗时，单位微秒
+     */
+    private final Recorder acquireRecorder = new Recorder(3);
+
+    /**
+     * 切换后窗口内的获取连接耗时，单位微秒
+     */
+    private final Recorder swapWindowRecorder = new Recorder(3);
+
+    /**
+     * 旧连接池从切换到关闭的耗时，单位毫秒
+     */
+    private final Histogram drainHistogram = new Histogram(3);
+
+    private final LongAdder errors = new LongAdder();
+
+    private final AtomicInteger poolSequence = new AtomicInteger();
+
+    private boolean virtualThreads;
+
+    private volatile long lastSwapAt;
+
+    private volatile boolean running = true;
+
+    public static void main(String[] args) throws Exception {
+        new DynamicDataSourceLoadHarness().run();
+    }
+
+    private void run() throws Exception {
+        DynamicDataSource dynamicDataSource = new DynamicDataSource(newPool());
+        DataSourceRefresher refresher = new DataSourceRefresher(dynamicDataSource);
+        Field retryField = ReflectionUtils.findField(DataSourceRefresher.class, "dataSourceShutdownMaxRetryTimes");
+        ReflectionUtils.makeAccessible(retryField);
+        ReflectionUtils.setField(retryField, refresher, shutdownMaxRetryTimes);
+
+        ExecutorService workers = newWorkerExecutor();
+        for (int i = 0; i < threads; i++) {
+            workers.execute(() -> work(dynamicDataSource));
+        }
+
+        long started = System.currentTimeMillis();
+        long swapInterval = durationMillis / (swaps + 1);
+        List<Thread> drainMonitors = new ArrayList<>(swaps);
+        for (int i = 0; i < swaps; i++) {
+            Thread.sleep(swapInterval);
+            HikariDataSource old = (HikariDataSource) dynamicDataSource.unwrap(HikariDataSource.class);
+            lastSwapAt = System.currentTimeMillis();
+            refresher.refreshDataSource(newPool());
+            drainMonitors.add(monitorDrain(old, lastSwapAt));
+        }
+        Thread.sleep(Math.max(0, durationMillis - (System.currentTimeMillis() - started)));
+        running = false;
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.MINUTES);
+        for (Thread monitor : drainMonitors) {
+            monitor.join(TimeUnit.MINUTES.toMillis(1));
+        }
+        report(System.currentTimeMillis() - started);
+        ((HikariDataSource) dynamicDataSource.unwrap(HikariDataSource.class)).close();
+        System.exit(0);
+    }
+
+    private void work(DynamicDataSource dataSource) {
+        while (running) {
+            long begin = System.nanoTime();
+            try (Connection connection = dataSource.getConnection()) {
+                long acquired = System.nanoTime();
+                long micros = TimeUnit.NANOSECONDS.toMicros(acquired - begin);
+                acquireRecorder.recordValue(micros);
+                if (System.currentTimeMillis() - lastSwapAt < SWAP_WINDOW_MILLIS) {
+                    swapWindowRecorder.recordValue(micros);
+                }
+                try (Statement statement = connection.createStatement();
+                     ResultSet rs = statement.executeQuery("SELECT 1")) {
+                    rs.next();
+                }
+                if (holdMillis > 0) {
+                    Thread.sleep(holdMillis);
+                }
+            } catch (SQLException e) {
+                errors.increment();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private Thread monitorDrain(HikariDataSource old, long swappedAt) {
+        Thread monitor = new Thread(() -> {
+            while (!old.isClosed()) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            synchronized (drainHistogram) {
+                drainHistogram.recordValue(System.currentTimeMillis() - swappedAt);
+            }
+        }, "drain-monitor");
+        monitor.setDaemon(true);
+        monitor.start();
+        return monitor;
+    }
+
+    private HikariDataSource newPool() {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(JDBC_URL);
+        config.setUsername("sa");
+        config.setPassword("");
+        config.setMaximumPoolSize(poolSize);
+        config.setMinimumIdle(poolSize);
+        config.setConnectionTimeout(5000);
+        config.setPoolName("load-" + poolSequence.incrementAndGet());
+        // 连接池的MXBean供DataSourceRefresher查询活跃连接
+        config.setRegisterMbeans(true);
+        return new HikariDataSource(config);
+    }
+
+    /**
+     * JDK 21+使用虚拟线程，否则使用平台线程
+     */
+    private ExecutorService newWorkerExecutor() {
+        if (virtual) {
+            try {
+                ExecutorService executor = (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                virtualThreads = true;
+                return executor;
+            } catch (ReflectiveOperationException e) {
+                System.out.println("Virtual threads are not available on this JDK, using platform threads");
+            }
+        }
+        return Executors.newFixedThreadPool(threads);
+    }
+
+    private void report(long elapsedMillis) throws FileNotFoundException {
+        Histogram acquire = acquireRecorder.getIntervalHistogram();
+        Histogram swapWindow = swapWindowRecorder.getIntervalHistogram();
+        System.out.printf("threads=%d virtual=%s pool-size=%d swaps=%d elapsed=%dms%n",
+                threads, virtualThreads, poolSize, swaps, elapsedMillis);
+        System.out.printf("acquisitions=%d throughput=%.0f/s errors=%d%n",
+                acquire.getTotalCount(), acquire.getTotalCount() * 1000.0 / elapsedMillis, errors.sum());
+        printPercentiles("acquire (us)", acquire);
+        printPercentiles("acquire within 1s after swap (us)", swapWindow);
+        synchronized (drainHistogram) {
+            printPercentiles("old pool drain (ms)", drainHistogram);
+        }
+        if (null != hgrm) {
+            try (PrintStream out = new PrintStream(hgrm)) {
+                acquire.outputPercentileDistribution(out, 1.0);
+            }
+            System.out.println("acquire latency distribution written to " + hgrm);
+        }
+    }
+
+    private static void printPercentiles(String name, Histogram histogram) {
+        System.out.printf("%-36s count=%d p50=%d p99=%d p999=%d max=%d%n", name,
+                histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50),
+                histogram.getValueAtPercentile(99),
+                histogram.getValueAtPercentile(99.9),
+                histogram.getMaxValue());
+    }
+}
@@ -0,0 +1,111 @@
+package alanna.salamander.data.benchmark;
+
+import alanna.salamander.data.tape.util.GeometryUtils;
+import mil.nga.sf.geojson.Geometry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.postgis.PGgeometry;
+import org.postgis.binary.BinaryWriter;
+
+import java.sql.SQLException;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GeometryUtils在PostGIS几何与GeoJSON之间的转换
+ *
+ * @author alanna
+ * @since 0.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeometryUtilsBenchmark {
+
+    /**
+     * point: 单点; polyline: 1000个顶点的折线; multipolygon: 10个各1万个顶点的面
+     */
+    @Param({"point", "polyline", "multipolygon"})
+    private String fixture;
+
+    private String ewkb;
+
+    private Geometry gGeometry;
+
+    @Setup
+    public void setup() throws SQLException {
+        String wkt;
+        switch (fixture) {
+            case "point":
+                wkt = "POINT(120.0219 30.2794)";
+                break;
+            case "polyline":
+                wkt = polyline(1000);
+                break;
+            default:
+                wkt = multipolygon(10, 10_000);
+                break;
+        }
+        PGgeometry pGeometry = new PGgeometry("SRID=4326;" + wkt);
+        // PostGIS以hex EWKB返回geometry列
+        ewkb = new BinaryWriter().writeHexed(pGeometry.getGeometry());
+        gGeometry = GeometryUtils.convertEWKB2GGeometry(ewkb);
+    }
+
+    @Benchmark
+    public Geometry convert2GGeometry() throws SQLException {
+        return GeometryUtils.convert2GGeometry(new PGgeometry(ewkb));
+    }
+
+    @Benchmark
+    public PGgeometry convert2PGeometry() throws SQLException {
+        return GeometryUtils.convert2PGeometry(gGeometry);
+    }
+
+    @Benchmark
+    public byte[] convert2EWKB() throws SQLException {
+        return GeometryUtils.convert2EWKB(gGeometry, 4326);
+    }
+
+    private static String polyline(int vertices) {
+        StringJoiner joiner = new StringJoiner(",", "LINESTRING(", ")");
+        for (int i = 0; i < vertices; i++) {
+            joiner.add(coordinate(120 + i * 0.0001, 30 + Math.sin(i * 0.01) * 0.01));
+        }
+        return joiner.toString();
+    }
+
+    private static String multipolygon(int polygons, int vertices) {
+        StringJoiner joiner = new StringJoiner(",", "MULTIPOLYGON(", ")");
+        for (int p = 0; p < polygons; p++) {
+            double centerX = 120 + p * 0.5;
+            double centerY = 30;
+            StringJoiner ring = new StringJoiner(",", "((", "))");
+            for (int i = 0; i < vertices; i++) {
+                double angle = 2 * Math.PI * i / vertices;
+                // 带锯齿的圆，避免坐标过于规则
+                double radius = 0.2 + 0.01 * Math.sin(angle * 97);
+                ring.add(coordinate(centerX + radius * Math.cos(angle), centerY + radius * Math.sin(angle)));
+            }
+            ring.add(coordinate(centerX + 0.2, centerY));
+            joiner.add(ring.toString());
+        }
+        return joiner.toString();
+    }
+
+    private static String coordinate(double x, double y) {
+        return x + " " + y;
+    }
+}
@@ -0,0 +1,137 @@
+package alanna.salamander.data.benchmark;
+
+import alanna.salamander.data.redis.config.RedisConfig;
+import alanna.salamander.data.redis.ops.RedisOperation;
+import alanna.salamander.data.redis.ops.Type;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RedisOperation值的编码与解码
+ * <p>
+ * RedisTemplate的连接被替换为内存中的ValueOperations，仍经过RedisConfig配置的序列化器，
+ * 因此测量的是客户端完整的编解码开销，不包含网络。
+ *
+ * @author alanna
+ * @since 0.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RedisOperationBenchmark {
+
+    private static final String KEY = "benchmark_key";
+
+    private static final Type<Map<String, Object>> VALUE_TYPE = new Type<Map<String, Object>>() {
+    };
+
+    /**
+     * small: 单个对象; large: 包含1000个对象的列表
+     */
+    @Param({"small", "large"})
+    private String payload;
+
+    private RedisOperation redisOperation;
+
+    private Map<String, Object> value;
+
+    @Setup
+    public void setup() {
+        redisOperation = new RedisOperation(inMemoryTemplate());
+        value = "small".equals(payload) ? user(1) : users(1000);
+        redisOperation.setValueFor(KEY).set(value);
+    }
+
+    @Benchmark
+    public void encode() {
+        redisOperation.setValueFor(KEY).set(value);
+    }
+
+    @Benchmark
+    public Map<String, Object> decode() {
+        return redisOperation.getValueFor(VALUE_TYPE).get(KEY);
+    }
+
+    private static Map<String, Object> users(int count) {
+        List<Map<String, Object>> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(user(i));
+        }
+        Map<String, Object> page = new HashMap<>(4);
+        page.put("total", count);
+        page.put("records", users);
+        return page;
+    }
+
+    private static Map<String, Object> user(int id) {
+        Map<String, Object> user = new HashMap<>(8);
+        user.put("id", id);
+        user.put("name", "张三" + id);
+        user.put("age", 30);
+        user.put("sex", "男");
+        user.put("email", "user" + id + "@example.com");
+        user.put("tags", List.of("admin", "ops", "beta"));
+        user.put("createTime", "2023-02-01T08:30:00");
+        return user;
+    }
+
+    /**
+     * 以RedisConfig的序列化器生成的RedisTemplate，值保存在内存中
+     */
+    @SuppressWarnings("unchecked")
+    private static RedisTemplate<String, String> inMemoryTemplate() {
+        RedisConnectionFactory connectionFactory = (RedisConnectionFactory) Proxy.newProxyInstance(
+                RedisConnectionFactory.class.getClassLoader(), new Class<?>[]{RedisConnectionFactory.class},
+                (proxy, method, args) -> {
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        RedisTemplate<String, String> configured = RedisConfig.newRedisTemplate(connectionFactory, String.class);
+        RedisSerializer<String> serializer = (RedisSerializer<String>) configured.getValueSerializer();
+        Map<String, byte[]> store = new ConcurrentHashMap<>();
+        ValueOperations<String, String> valueOperations = (ValueOperations<String, String>) Proxy.newProxyInstance(
+                ValueOperations.class.getClassLoader(), new Class<?>[]{ValueOperations.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "set":
+                            store.put((String) args[0], serializer.serialize((String) args[1]));
+                            return null;
+                        case "get":
+                            return serializer.deserialize(store.get((String) args[0]));
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        RedisTemplate<String, String> template = new RedisTemplate<>() {
+            @Override
+            public ValueOperations<String, String> opsForValue() {
+                return valueOperations;
+            }
+        };
+        template.setConnectionFactory(connectionFactory);
+        return template;
+    }
+}
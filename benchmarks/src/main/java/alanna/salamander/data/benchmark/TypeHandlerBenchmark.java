@@ -0,0 +1,138 @@
+package alanna.salamander.data.benchmark;
+
+import alanna.salamander.data.tape.config.PostgresqlMybatisPlusConfig.JSONArrayTypeHandler;
+import alanna.salamander.data.tape.config.PostgresqlMybatisPlusConfig.JsonTypeHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.postgresql.core.BaseConnection;
+import org.postgresql.core.Oid;
+import org.postgresql.core.TypeInfo;
+import org.postgresql.jdbc.PgArray;
+import org.postgresql.jdbc.TypeInfoCache;
+
+import java.lang.reflect.Proxy;
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JsonTypeHandler与JSONArrayTypeHandler从列值解码
+ * <p>
+ * ResultSet与PgArray所需的连接均为内存实现，列值为PostgreSQL返回的文本格式。
+ *
+ * @author alanna
+ * @since 0.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TypeHandlerBenchmark {
+
+    /**
+     * 典型的jsonb业务字段
+     */
+    private static final String JSONB = "{\"id\": 10086, \"name\": \"张三\", \"enabled\": true, "
+            + "\"score\": 98.5, \"tags\": [\"admin\", \"ops\", \"beta\"], "
+            + "\"address\": {\"province\": \"浙江省\", \"city\": \"杭州市\", \"street\": \"文一西路969号\", "
+            + "\"location\": {\"lng\": 120.0219, \"lat\": 30.2794}}, "
+            + "\"contacts\": [{\"type\": \"phone\", \"value\": \"13800000000\"}, "
+            + "{\"type\": \"email\", \"value\": \"zhangsan@example.com\"}], "
+            + "\"createTime\": \"2023-02-01 08:30:00\"}";
+
+    private final JsonTypeHandler jsonTypeHandler = new JsonTypeHandler();
+
+    private final JSONArrayTypeHandler jsonArrayTypeHandler = new JSONArrayTypeHandler();
+
+    private BaseConnection connection;
+
+    private String varcharArray;
+
+    private String int8Array;
+
+    private ResultSet jsonResultSet;
+
+    @Setup
+    public void setup() {
+        connection = arrayConnection();
+        StringJoiner varchars = new StringJoiner(",", "{", "}");
+        StringJoiner int8s = new StringJoiner(",", "{", "}");
+        for (int i = 0; i < 100; i++) {
+            varchars.add("\"标签 " + i + "\"");
+            int8s.add(String.valueOf(1_000_000_000L + i));
+        }
+        varcharArray = varchars.toString();
+        int8Array = int8s.toString();
+        jsonResultSet = resultSet(JSONB, null);
+    }
+
+    @Benchmark
+    public Map<String, ?> decodeJsonb() throws SQLException {
+        return jsonTypeHandler.getResult(jsonResultSet, "payload");
+    }
+
+    @Benchmark
+    public List<?> decodeVarcharArray() throws SQLException {
+        // PgArray在首次getArray时解析并缓存，每次调用需新建
+        return jsonArrayTypeHandler.getResult(resultSet(null, new PgArray(connection, Oid.VARCHAR_ARRAY, varcharArray)), "tags");
+    }
+
+    @Benchmark
+    public List<?> decodeInt8Array() throws SQLException {
+        return jsonArrayTypeHandler.getResult(resultSet(null, new PgArray(connection, Oid.INT8_ARRAY, int8Array)), "ids");
+    }
+
+    private static ResultSet resultSet(String string, Array array) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getString":
+                            return string;
+                        case "getArray":
+                            return array;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * 只提供内置类型信息的连接，足以解析内置类型的数组文本
+     */
+    private static BaseConnection arrayConnection() {
+        BaseConnection[] connection = new BaseConnection[1];
+        TypeInfo[] typeInfo = new TypeInfo[1];
+        connection[0] = (BaseConnection) Proxy.newProxyInstance(BaseConnection.class.getClassLoader(),
+                new Class<?>[]{BaseConnection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getTypeInfo":
+                            return typeInfo[0];
+                        case "getStandardConformingStrings":
+                        case "haveMinimumServerVersion":
+                            return true;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        TypeInfoCache typeInfoCache = new TypeInfoCache(connection[0], -1);
+        typeInfo[0] = (TypeInfo) Proxy.newProxyInstance(TypeInfo.class.getClassLoader(), new Class<?>[]{TypeInfo.class},
+                (proxy, method, args) -> "getArrayDelimiter".equals(method.getName())
+                        ? ',' : method.invoke(typeInfoCache, args));
+        return connection[0];
+    }
+}
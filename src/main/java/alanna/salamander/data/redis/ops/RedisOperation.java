@@ -4,13 +4,22 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * Redis操作对象
@@ -195,6 +204,134 @@ public class RedisOperation {
         }
     }
 
+    /**
+     * 获取key的原始字节值，不经过JSON序列化，用于二进制数据
+     *
+     * @param key redis key
+     * @return key's value bytes
+     */
+    public byte[] getBytes(String key) {
+        byte[] rawKey = rawKey(key);
+        return redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands().get(rawKey));
+    }
+
+    /**
+     * 以原始字节写入key值，不经过JSON序列化，用于二进制数据
+     *
+     * @param key      redis key
+     * @param value    value bytes
+     * @param timeout  过期时长
+     * @param timeUnit 时间单位
+     */
+    public void setBytes(String key, byte[] value, long timeout, TimeUnit timeUnit) {
+        byte[] rawKey = rawKey(key);
+        redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.stringCommands()
+                .set(rawKey, value, Expiration.from(timeout, timeUnit), RedisStringCommands.SetOption.upsert()));
+    }
+
+    /**
+     * 批量获取key值
+     *
+     * @param keys       redis keys
+     * @param resultType 结果数据的封装类型
+     * @return keys' values, 与keys顺序一致，不存在的key为null
+     */
+    public <T> List<T> multiGetValue(Collection<String> keys, Type<T> resultType) {
+        List<String> values = redisTemplate.opsForValue().multiGet(keys);
+        if (null == values) {
+            return Collections.nCopies(keys.size(), null);
+        }
+        return values.stream()
+                .map(v -> null == v ? null : convertTo(v, resultType))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 获取hash中field的值
+     *
+     * @param key        redis key
+     * @param field      hash field
+     * @param resultType 结果数据的封装类型
+     * @return field's value
+     */
+    public <T> T getHashValue(String key, String field, Type<T> resultType) {
+        Object value = redisTemplate.opsForHash().get(key, field);
+        return Optional.ofNullable(value)
+                .map(v -> convertTo((String) v, resultType))
+                .orElse(null);
+    }
+
+    /**
+     * 批量获取hash中field的值
+     *
+     * @param key        redis key
+     * @param fields     hash fields
+     * @param resultType 结果数据的封装类型
+     * @return fields' values, 与fields顺序一致，不存在的field为null
+     */
+    public <T> List<T> multiGetHashValue(String key, Collection<String> fields, Type<T> resultType) {
+        List<Object> values = redisTemplate.opsForHash().multiGet(key, new ArrayList<>(fields));
+        return values.stream()
+                .map(v -> null == v ? null : convertTo((String) v, resultType))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 写入hash中field的值
+     *
+     * @param key   redis key
+     * @param field hash field
+     * @param value field's value
+     */
+    public void putHashValue(String key, String field, Object value) {
+        redisTemplate.opsForHash().put(key, field, writeValueAsString(value));
+    }
+
+    /**
+     * 批量写入hash中field的值
+     *
+     * @param key    redis key
+     * @param values field和value
+     */
+    public void putAllHashValue(String key, Map<String, ?> values) {
+        Map<String, String> serialized = new HashMap<>(values.size());
+        values.forEach((field, value) -> serialized.put(field, writeValueAsString(value)));
+        redisTemplate.opsForHash().putAll(key, serialized);
+    }
+
+    /**
+     * 删除hash中的field
+     *
+     * @param key    redis key
+     * @param fields hash fields
+     * @return 删除的field数量
+     */
+    public Long deleteHashValue(String key, Object... fields) {
+        return redisTemplate.opsForHash().delete(key, fields);
+    }
+
+    /**
+     * hash中field的数量
+     *
+     * @param key redis key
+     * @return field数量
+     */
+    public Long hashSize(String key) {
+        return redisTemplate.opsForHash().size(key);
+    }
+
+    /**
+     * 设置key的过期时间
+     *
+     * @param key      redis key
+     * @param timeout  过期时长
+     * @param timeUnit 时间单位
+     * @return Boolean
+     */
+    public Boolean expire(String key, long timeout, TimeUnit timeUnit) {
+        return redisTemplate.expire(key, timeout, timeUnit);
+    }
+
     /**
      * 删除key
      *
@@ -205,6 +342,26 @@ public class RedisOperation {
         return redisTemplate.delete(key);
     }
 
+    /**
+     * key值自增1，key不存在时以0为初始值
+     *
+     * @param key redis key
+     * @return 自增后的值
+     */
+    public Long increment(String key) {
+        return redisTemplate.opsForValue().increment(key);
+    }
+
+    /**
+     * 批量删除key
+     *
+     * @param keys redis keys
+     * @return 删除的key数量
+     */
+    public Long delete(Collection<String> keys) {
+        return redisTemplate.delete(keys);
+    }
+
     /**
      * 判断key是否存在
      *
@@ -215,6 +372,11 @@ public class RedisOperation {
         return redisTemplate.persist(key);
     }
 
+    @SuppressWarnings("unchecked")
+    private byte[] rawKey(String key) {
+        return ((RedisSerializer<String>) redisTemplate.getKeySerializer()).serialize(key);
+    }
+
     private static <T> T convertTo(String value, Type<T> t) {
         try {
             return VALUE_MAPPER.readValue(value, t);
@@ -0,0 +1,434 @@
+package alanna.salamander.data.tape.cache;
+
+import alanna.salamander.data.redis.ops.RedisOperation;
+import alanna.salamander.data.redis.ops.Type;
+import com.alibaba.fastjson2.JSONObject;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 基于PostgreSQL LISTEN/NOTIFY的缓存失效
+ * <p>
+ * 在独立的数据库连接上监听通知频道，将其他系统直接写库产生的行变更转换为Redis key的批量删除或
+ * {@link RedisCache} namespace的清空，从而可以使用较长的缓存过期时间。
+ * 触发器由{@link #installTrigger(String, String)}或{@link CacheInvalidationTriggers}生成。
+ * <p>
+ * 已处理的变更日志位置保存在Redis中，连接断开重连以及应用重启后都从该位置补齐期间的变更。
+ * 没有保存的位置，或期间的变更日志已被清理时，无法确定变更范围，失效全部绑定：
+ * 清空全部namespace，并执行{@link #bindKeys(String, Function, Runnable)}提供的全量失效方法；
+ * 未提供全量失效方法的key只能等待过期。
+ * <pre>
+ * listener.bindNamespace("region", RegionMapper.class.getName())
+ *         .bindKeys("user", change -&gt; List.of("user:" + change.getKey()), () -&gt; userCache.clear());
+ * </pre>
+ *
+ * @author alanna
+ * @since 0.1
+ */
+@SuppressWarnings({"unused", "UnusedReturnValue"})
+@ConditionalOnProperty(prefix = "salamander.data.cache-invalidation", name = "power", havingValue = "on")
+@Component
+public class CacheInvalidationListener implements SmartInitializingSingleton, DisposableBean {
+
+    private static final Type<Checkpoint> CHECKPOINT_TYPE = new Type<Checkpoint>() {
+    };
+
+    private final RedisOperation redisOperation;
+
+    /**
+     * 表名到失效规则的绑定
+     */
+    private final Map<String, TableBinding> bindings = new ConcurrentHashMap<>();
+
+    @Value("${salamander.data.cache-invalidation.url:${spring.datasource.url}}")
+    private String url;
+
+    @Value("${salamander.data.cache-invalidation.username:${spring.datasource.username:}}")
+    private String username;
+
+    @Value("${salamander.data.cache-invalidation.password:${spring.datasource.password:}}")
+    private String password;
+
+    /**
+     * 通知频道
+     */
+    @Value("${salamander.data.cache-invalidation.channel:salamander_cache}")
+    private String channel;
+
+    /**
+     * 每次等待通知的时长，同一时间窗口内的通知合并为一次失效，单位毫秒
+     */
+    @Value("${salamander.data.cache-invalidation.batch-window:200}")
+    private int batchWindow;
+
+    /**
+     * 重连间隔，单位毫秒
+     */
+    @Value("${salamander.data.cache-invalidation.reconnect-interval:5000}")
+    private long reconnectInterval;
+
+    /**
+     * 重连补齐时，按时间额外回溯的秒数，用于覆盖断线前后提交顺序与日志ID不一致的事务
+     */
+    @Value("${salamander.data.cache-invalidation.catch-up-lookback:60}")
+    private long catchUpLookback;
+
+    /**
+     * 变更日志保留时长，单位秒
+     */
+    @Value("${salamander.data.cache-invalidation.retention:86400}")
+    private long retention;
+
+    /**
+     * 保存已处理位置的Redis key，默认按通知频道区分
+     */
+    @Value("${salamander.data.cache-invalidation.checkpoint-key:salamander:cache-invalidation:${salamander.data.cache-invalidation.channel:salamander_cache}}")
+    private String checkpointKey;
+
+    private volatile boolean running;
+
+    private Thread worker;
+
+    private Connection connection;
+
+    /**
+     * 已处理的最大变更日志ID，-1表示尚未读取保存的位置
+     */
+    private long lastChangeId = -1;
+
+    /**
+     * 最近一次断线的时间，应用启动时为保存位置的时间
+     */
+    private long disconnectedAt;
+
+    private long lastCheckpointAt;
+
+    private long lastPurgeAt;
+
+    @Autowired
+    public CacheInvalidationListener(RedisOperation redisOperation) {
+        this.redisOperation = redisOperation;
+    }
+
+    /**
+     * 表变更时清空{@link RedisCache}的namespace
+     *
+     * @param table      表名，不含schema
+     * @param namespaces Mapper的namespace
+     * @return CacheInvalidationListener
+     */
+    public CacheInvalidationListener bindNamespace(String table, String... namespaces) {
+        bindings.computeIfAbsent(table, t -> new TableBinding()).namespaces.addAll(Arrays.asList(namespaces));
+        return this;
+    }
+
+    /**
+     * 表变更时删除根据变更行计算出的key
+     *
+     * @param table     表名，不含schema
+     * @param keyMapper 变更行到Redis key的映射
+     * @return CacheInvalidationListener
+     */
+    public CacheInvalidationListener bindKeys(String table, Function<RowChange, Collection<String>> keyMapper) {
+        bindings.computeIfAbsent(table, t -> new TableBinding()).keyMappers.add(keyMapper);
+        return this;
+    }
+
+    /**
+     * 表变更时删除根据变更行计算出的key，无法确定变更范围时执行全量失效
+     *
+     * @param table         表名，不含schema
+     * @param keyMapper     变更行到Redis key的映射
+     * @param invalidateAll 删除该表全部key的方法，如删除key的集合或递增版本号
+     * @return CacheInvalidationListener
+     */
+    public CacheInvalidationListener bindKeys(String table, Function<RowChange, Collection<String>> keyMapper,
+                                              Runnable invalidateAll) {
+        TableBinding binding = bindings.computeIfAbsent(table, t -> new TableBinding());
+        binding.keyMappers.add(keyMapper);
+        binding.invalidateAlls.add(invalidateAll);
+        return this;
+    }
+
+    /**
+     * 在数据库中创建变更日志表、触发器函数以及表的触发器
+     *
+     * @param table     表名
+     * @param keyColumn 通知中携带的键列
+     * @throws SQLException SQLException
+     */
+    public void installTrigger(String table, String keyColumn) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url, username, password);
+             Statement statement = conn.createStatement()) {
+            statement.execute(CacheInvalidationTriggers.createFunctionSql());
+            statement.execute(CacheInvalidationTriggers.createTriggerSql(table, keyColumn, channel));
+        }
+    }
+
+    /**
+     * 全部单例初始化完成后开始监听，其他bean初始化时注册的绑定在首次补齐前已经生效
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        CacheInvalidationTriggers.checkIdentifier(channel);
+        running = true;
+        worker = new Thread(this::run, "salamander-cache-invalidation");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        if (null != worker) {
+            worker.interrupt();
+            worker.join(reconnectInterval);
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                connect();
+                listen();
+            } catch (SQLException | RuntimeException e) {
+                // 数据库或Redis异常，重连后从变更日志补齐
+                disconnect();
+                sleep(reconnectInterval);
+            }
+        }
+        disconnect();
+    }
+
+    private void connect() throws SQLException {
+        connection = DriverManager.getConnection(url, username, password);
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet rs = statement.executeQuery("SELECT to_regclass('"
+                    + CacheInvalidationTriggers.CHANGE_TABLE + "') IS NULL")) {
+                rs.next();
+                if (rs.getBoolean(1)) {
+                    statement.execute(CacheInvalidationTriggers.createFunctionSql());
+                }
+            }
+            statement.execute("LISTEN " + channel);
+        }
+        if (lastChangeId < 0) {
+            Checkpoint checkpoint = redisOperation.getValueFor(CHECKPOINT_TYPE).get(checkpointKey);
+            if (null == checkpoint) {
+                // 首次启动或位置已过期，此前的变更无从得知
+                lastChangeId = maxChangeId();
+                invalidateAll();
+                checkpoint();
+                return;
+            }
+            lastChangeId = checkpoint.id;
+            disconnectedAt = checkpoint.time;
+        }
+        catchUp();
+    }
+
+    private void listen() throws SQLException {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        while (running) {
+            PGNotification[] notifications = pgConnection.getNotifications(batchWindow);
+            if (null != notifications && notifications.length > 0) {
+                List<RowChange> changes = new ArrayList<>(notifications.length);
+                for (PGNotification notification : notifications) {
+                    changes.add(parse(notification.getParameter()));
+                }
+                invalidate(changes);
+            }
+            purge();
+        }
+    }
+
+    /**
+     * 补齐断线期间的变更
+     */
+    private void catchUp() throws SQLException {
+        long minChangeId;
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT min(id) FROM " + CacheInvalidationTriggers.CHANGE_TABLE)) {
+            rs.next();
+            minChangeId = rs.getLong(1);
+        }
+        if (minChangeId > lastChangeId + 1 || disconnectedAt < System.currentTimeMillis() - retention * 1000) {
+            // 断线期间的日志已被清理，无法确定变更范围
+            invalidateAll();
+        }
+        List<RowChange> changes = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement("SELECT id, table_name, operation, row_key FROM "
+                + CacheInvalidationTriggers.CHANGE_TABLE + " WHERE id > ? OR changed_at >= ? ORDER BY id")) {
+            ps.setLong(1, lastChangeId);
+            ps.setTimestamp(2, new Timestamp(disconnectedAt - catchUpLookback * 1000));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    changes.add(new RowChange(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4)));
+                }
+            }
+        }
+        invalidate(changes);
+    }
+
+    private void invalidate(List<RowChange> changes) {
+        Set<String> keys = new HashSet<>();
+        Set<String> namespaces = new HashSet<>();
+        long maxChangeId = lastChangeId;
+        for (RowChange change : changes) {
+            maxChangeId = Math.max(maxChangeId, change.getId());
+            TableBinding binding = bindings.get(change.getTable());
+            if (null == binding) {
+                continue;
+            }
+            namespaces.addAll(binding.namespaces);
+            for (Function<RowChange, Collection<String>> keyMapper : binding.keyMappers) {
+                Collection<String> mapped = keyMapper.apply(change);
+                if (null != mapped) {
+                    keys.addAll(mapped);
+                }
+            }
+        }
+        if (!keys.isEmpty()) {
+            redisOperation.delete(keys);
+        }
+        namespaces.forEach(namespace -> redisOperation.increment(RedisCache.versionKey(namespace)));
+        if (maxChangeId > lastChangeId) {
+            lastChangeId = maxChangeId;
+            checkpoint();
+        }
+    }
+
+    /**
+     * 清空全部绑定的namespace，并执行全部全量失效方法
+     */
+    private void invalidateAll() {
+        Set<String> namespaces = new HashSet<>();
+        for (TableBinding binding : bindings.values()) {
+            namespaces.addAll(binding.namespaces);
+        }
+        namespaces.forEach(namespace -> redisOperation.increment(RedisCache.versionKey(namespace)));
+        for (TableBinding binding : bindings.values()) {
+            binding.invalidateAlls.forEach(Runnable::run);
+        }
+    }
+
+    /**
+     * 保存已处理的位置，有效期与变更日志保留时长一致，超过保留时长的位置已无法补齐
+     */
+    private void checkpoint() {
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.id = lastChangeId;
+        checkpoint.time = System.currentTimeMillis();
+        redisOperation.setValueFor(checkpointKey).timeout(retention).timeUnit(TimeUnit.SECONDS).set(checkpoint);
+        lastCheckpointAt = checkpoint.time;
+    }
+
+    /**
+     * 定期清理过期的变更日志
+     */
+    private void purge() throws SQLException {
+        long now = System.currentTimeMillis();
+        if (now - lastPurgeAt < retention * 1000 / 10) {
+            return;
+        }
+        lastPurgeAt = now;
+        if (now - lastCheckpointAt >= retention * 1000 / 10) {
+            // 没有变更时也刷新位置，避免其过期
+            checkpoint();
+        }
+        try (PreparedStatement ps = connection.prepareStatement("DELETE FROM "
+                + CacheInvalidationTriggers.CHANGE_TABLE + " WHERE changed_at < ?")) {
+            ps.setTimestamp(1, new Timestamp(now - retention * 1000));
+            ps.executeUpdate();
+        }
+    }
+
+    private long maxChangeId() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT coalesce(max(id), 0) FROM "
+                     + CacheInvalidationTriggers.CHANGE_TABLE)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private void disconnect() {
+        if (null == connection) {
+            return;
+        }
+        disconnectedAt = System.currentTimeMillis();
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // 连接已不可用
+        }
+        connection = null;
+    }
+
+    private static RowChange parse(String payload) {
+        JSONObject json = JSONObject.parseObject(payload);
+        return new RowChange(json.getLongValue("id"), json.getString("table"),
+                json.getString("op"), json.getString("key"));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 表的失效规则
+     */
+    private static class TableBinding {
+
+        private final List<String> namespaces = new CopyOnWriteArrayList<>();
+
+        private final List<Function<RowChange, Collection<String>>> keyMappers = new CopyOnWriteArrayList<>();
+
+        private final List<Runnable> invalidateAlls = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * 已处理的位置
+     */
+    static class Checkpoint {
+
+        /**
+         * 已处理的最大变更日志ID
+         */
+        public long id;
+
+        /**
+         * 保存的时间
+         */
+        public long time;
+    }
+}
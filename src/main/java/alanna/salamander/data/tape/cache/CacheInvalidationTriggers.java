@@ -0,0 +1,108 @@
+package alanna.salamander.data.tape.cache;
+
+import java.util.regex.Pattern;
+
+/**
+ * 生成缓存失效通知的DDL
+ * <p>
+ * 被监听的表每变更一行，触发器向变更日志表写入一条记录，并以pg_notify发送该记录，
+ * 监听端断线重连后可以从变更日志中补齐断线期间的变更。UPDATE修改了键列时，旧键也会被通知。
+ *
+ * @author alanna
+ * @since 0.1
+ */
+public class CacheInvalidationTriggers {
+
+    /**
+     * 变更日志表
+     */
+    public static final String CHANGE_TABLE = "salamander_cache_change";
+
+    /**
+     * 触发器函数及触发器名称
+     */
+    public static final String TRIGGER_NAME = "salamander_cache_notify";
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)?");
+
+    private CacheInvalidationTriggers() {
+    }
+
+    /**
+     * 变更日志表与触发器函数，可重复执行
+     *
+     * @return DDL
+     */
+    public static String createFunctionSql() {
+        return "CREATE TABLE IF NOT EXISTS " + CHANGE_TABLE + " (\n"
+                + "    id         bigserial PRIMARY KEY,\n"
+                + "    table_name text        NOT NULL,\n"
+                + "    operation  text        NOT NULL,\n"
+                + "    row_key    text,\n"
+                + "    changed_at timestamptz NOT NULL DEFAULT now()\n"
+                + ");\n"
+                + "CREATE INDEX IF NOT EXISTS " + CHANGE_TABLE + "_changed_at_idx ON " + CHANGE_TABLE + " (changed_at);\n"
+                + "CREATE OR REPLACE FUNCTION " + TRIGGER_NAME + "() RETURNS trigger AS $$\n"
+                + "DECLARE\n"
+                + "    new_key text;\n"
+                + "    old_key text;\n"
+                + "BEGIN\n"
+                + "    IF TG_OP <> 'DELETE' THEN\n"
+                + "        new_key := to_jsonb(NEW) ->> TG_ARGV[0];\n"
+                + "        PERFORM " + TRIGGER_NAME + "_send(TG_ARGV[1], TG_TABLE_NAME, TG_OP, new_key);\n"
+                + "    END IF;\n"
+                + "    IF TG_OP <> 'INSERT' THEN\n"
+                + "        old_key := to_jsonb(OLD) ->> TG_ARGV[0];\n"
+                + "        IF TG_OP = 'DELETE' OR old_key IS DISTINCT FROM new_key THEN\n"
+                + "            PERFORM " + TRIGGER_NAME + "_send(TG_ARGV[1], TG_TABLE_NAME, TG_OP, old_key);\n"
+                + "        END IF;\n"
+                + "    END IF;\n"
+                + "    RETURN NULL;\n"
+                + "END;\n"
+                + "$$ LANGUAGE plpgsql;\n"
+                + "CREATE OR REPLACE FUNCTION " + TRIGGER_NAME + "_send(channel text, tbl text, op text, row_key text)\n"
+                + "RETURNS void AS $$\n"
+                + "DECLARE\n"
+                + "    change_id bigint;\n"
+                + "BEGIN\n"
+                + "    INSERT INTO " + CHANGE_TABLE + " (table_name, operation, row_key) VALUES (tbl, op, row_key)\n"
+                + "    RETURNING id INTO change_id;\n"
+                + "    PERFORM pg_notify(channel, json_build_object('id', change_id, 'table', tbl, 'op', op, 'key', row_key)::text);\n"
+                + "END;\n"
+                + "$$ LANGUAGE plpgsql;\n";
+    }
+
+    /**
+     * 为表创建通知触发器，可重复执行
+     *
+     * @param table     表名
+     * @param keyColumn 通知中携带的键列，一般为主键
+     * @param channel   通知频道
+     * @return DDL
+     */
+    public static String createTriggerSql(String table, String keyColumn, String channel) {
+        checkIdentifier(table);
+        checkIdentifier(keyColumn);
+        checkIdentifier(channel);
+        return "DROP TRIGGER IF EXISTS " + TRIGGER_NAME + " ON " + table + ";\n"
+                + "CREATE TRIGGER " + TRIGGER_NAME + " AFTER INSERT OR UPDATE OR DELETE ON " + table + "\n"
+                + "FOR EACH ROW EXECUTE PROCEDURE " + TRIGGER_NAME + "('" + keyColumn + "', '" + channel + "');\n";
+    }
+
+    /**
+     * 删除表的通知触发器
+     *
+     * @param table 表名
+     * @return DDL
+     */
+    public static String dropTriggerSql(String table) {
+        checkIdentifier(table);
+        return "DROP TRIGGER IF EXISTS " + TRIGGER_NAME + " ON " + table + ";\n";
+    }
+
+    static void checkIdentifier(String identifier) {
+        if (null == identifier || !IDENTIFIER.matcher(identifier).matches()) {
+            throw new IllegalArgumentException("Invalid identifier: " + identifier);
+        }
+    }
+}
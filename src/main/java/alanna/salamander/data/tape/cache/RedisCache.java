@@ -0,0 +1,281 @@
+package alanna.salamander.data.tape.cache;
+
+import alanna.salamander.data.redis.ops.RedisOperation;
+import alanna.salamander.data.redis.ops.Type;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于Redis的MyBatis二级缓存
+ * <p>
+ * 按Mapper开启：
+ * <pre>
+ * &#64;CacheNamespace(implementation = RedisCache.class, properties = {
+ *         &#64;Property(name = "timeout", value = "3600"),
+ *         &#64;Property(name = "size", value = "10000")})
+ * public interface RegionMapper extends BaseMapper&lt;Region&gt; {
+ * }
+ * </pre>
+ * 每个条目是一个独立的Redis key，值为Java序列化后的原始字节，以SET EX写入，写入timeout秒后过期。
+ * key由namespace、版本号和CacheKey(语句ID、SQL、参数、分页)的SHA-256组成。
+ * 该namespace执行insert/update/delete时MyBatis调用{@link #clear()}，递增版本号，所有节点同时失效，
+ * 旧版本的条目随过期时间自然淘汰。每个版本在一个过期周期内最多写入size个条目。
+ * <p>
+ * 缓存的结果需实现{@link java.io.Serializable}，不可序列化的结果不缓存。
+ * 反序列化只允许JDK基础类型、salamander、simple-features以及allowedPackages中的类，
+ * allowedPackages默认为namespace的前两级包(如com.example.**)，多个包以逗号分隔。
+ * 需要开启salamander.data.redis.power。
+ *
+ * @author alanna
+ * @since 0.1
+ */
+@SuppressWarnings("unused")
+public class RedisCache implements Cache {
+
+    private static final Type<Long> LONG_TYPE = new Type<Long>() {
+    };
+
+    private static final Log log = LogFactory.getLog(RedisCache.class);
+
+    /**
+     * 始终允许反序列化的类
+     */
+    private static final String BASE_ALLOWED_PATTERNS = "java.lang.*;java.util.*;java.time.*;java.math.*;java.sql.*;"
+            + "alanna.salamander.**;mil.nga.sf.**;";
+
+    private static volatile RedisOperation redisOperation;
+
+    private final String id;
+
+    /**
+     * 过期时长，单位秒
+     */
+    private long timeout = 60L * 60;
+
+    /**
+     * 最大条目数
+     */
+    private int size = 10000;
+
+    /**
+     * 单个条目序列化后的最大字节数，超过时不缓存
+     */
+    private int maxEntryBytes = 1024 * 1024;
+
+    /**
+     * 允许反序列化的包，逗号分隔
+     */
+    private String allowedPackages;
+
+    private volatile ObjectInputFilter serialFilter;
+
+    public RedisCache(String id) {
+        if (null == id) {
+            throw new IllegalArgumentException("Cache instances require an ID");
+        }
+        this.id = id;
+        String[] segments = id.split("\\.");
+        this.allowedPackages = segments.length > 2 ? segments[0] + "." + segments[1] : "";
+    }
+
+    /**
+     * namespace的版本号key，递增即清空该namespace的缓存
+     *
+     * @param id cache id, 即Mapper的namespace
+     * @return redis key
+     */
+    public static String versionKey(String id) {
+        return "salamander:mybatis:" + id + ":version";
+    }
+
+    static void setRedisOperation(RedisOperation redisOperation) {
+        RedisCache.redisOperation = redisOperation;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public void setMaxEntryBytes(int maxEntryBytes) {
+        this.maxEntryBytes = maxEntryBytes;
+        this.serialFilter = null;
+    }
+
+    public void setAllowedPackages(String allowedPackages) {
+        this.allowedPackages = allowedPackages;
+        this.serialFilter = null;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public void putObject(Object cacheKey, Object value) {
+        // TransactionalCache提交时会为未命中的key写入null，无需缓存
+        if (null == value) {
+            return;
+        }
+        byte[] bytes = serialize(value);
+        if (null == bytes || bytes.length > maxEntryBytes) {
+            return;
+        }
+        RedisOperation operation = redisOperation();
+        String prefix = versionPrefix(operation);
+        String countKey = prefix + "count";
+        long count = nullToZero(operation.increment(countKey));
+        if (count == 1) {
+            operation.expire(countKey, timeout, TimeUnit.SECONDS);
+        }
+        if (count > size) {
+            return;
+        }
+        operation.setBytes(prefix + field(cacheKey), bytes, timeout, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public Object getObject(Object cacheKey) {
+        RedisOperation operation = redisOperation();
+        byte[] bytes = operation.getBytes(versionPrefix(operation) + field(cacheKey));
+        return null == bytes ? null : deserialize(bytes);
+    }
+
+    @Override
+    public Object removeObject(Object cacheKey) {
+        RedisOperation operation = redisOperation();
+        operation.delete(versionPrefix(operation) + field(cacheKey));
+        return null;
+    }
+
+    @Override
+    public void clear() {
+        redisOperation().increment(versionKey(id));
+    }
+
+    /**
+     * 当前版本在本过期周期内写入的条目数
+     */
+    @Override
+    public int getSize() {
+        RedisOperation operation = redisOperation();
+        Long count = operation.getValueFor(LONG_TYPE).get(versionPrefix(operation) + "count");
+        return (int) Math.min(size, nullToZero(count));
+    }
+
+    /**
+     * 当前版本的key前缀
+     */
+    private String versionPrefix(RedisOperation operation) {
+        long version = Optional.ofNullable(operation.getValueFor(LONG_TYPE).get(versionKey(id))).orElse(0L);
+        return "salamander:mybatis:" + id + ":v" + version + ":";
+    }
+
+    private static RedisOperation redisOperation() {
+        RedisOperation operation = redisOperation;
+        if (null == operation) {
+            throw new CacheException("RedisOperation is not available, salamander.data.redis.power must be on");
+        }
+        return operation;
+    }
+
+    private static long nullToZero(Long value) {
+        return null == value ? 0L : value;
+    }
+
+    private static String field(Object cacheKey) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(messageDigest.digest(cacheKey.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new CacheException(e);
+        }
+    }
+
+    /**
+     * 序列化结果，不可序列化时返回null
+     */
+    private byte[] serialize(Object value) {
+        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+             ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(value);
+            oos.flush();
+            return bos.toByteArray();
+        } catch (NotSerializableException e) {
+            log.warn("Result of cache " + id + " is not cached, not serializable: " + e.getMessage());
+            return null;
+        } catch (IOException e) {
+            throw new CacheException("Error serializing object. Cause: " + e, e);
+        }
+    }
+
+    /**
+     * 反序列化结果，被过滤器拒绝时视为未命中
+     */
+    private Object deserialize(byte[] value) {
+        try (ObjectInputStream ois = new ClassLoaderObjectInputStream(new ByteArrayInputStream(value))) {
+            ois.setObjectInputFilter(serialFilter());
+            return ois.readObject();
+        } catch (InvalidClassException e) {
+            log.warn("Cached result of " + id + " rejected: " + e.getMessage() + ", check allowedPackages");
+            return null;
+        } catch (IOException | ClassNotFoundException e) {
+            throw new CacheException("Error deserializing object. Cause: " + e, e);
+        }
+    }
+
+    private ObjectInputFilter serialFilter() {
+        ObjectInputFilter filter = serialFilter;
+        if (null == filter) {
+            StringBuilder patterns = new StringBuilder("maxbytes=").append(maxEntryBytes).append(";maxdepth=64;")
+                    .append(BASE_ALLOWED_PATTERNS);
+            for (String allowedPackage : allowedPackages.split(",")) {
+                if (!allowedPackage.isBlank()) {
+                    patterns.append(allowedPackage.trim()).append(".**;");
+                }
+            }
+            filter = ObjectInputFilter.Config.createFilter(patterns.append("!*").toString());
+            serialFilter = filter;
+        }
+        return filter;
+    }
+
+    /**
+     * 使用MyBatis的类加载器解析类
+     */
+    private static class ClassLoaderObjectInputStream extends ObjectInputStream {
+
+        private ClassLoaderObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws ClassNotFoundException {
+            return Resources.classForName(desc.getName());
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package alanna.salamander.data.tape.cache;
+
+import alanna.salamander.data.redis.ops.RedisOperation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * MyBatis按类名实例化缓存，无法注入Spring bean，由该对象将RedisOperation提供给{@link RedisCache}
+ *
+ * @author alanna
+ * @since 0.1
+ */
+@ConditionalOnProperty(prefix = "salamander.data.redis", name = "power", havingValue = "on")
+@Component
+public class RedisCacheRegistrar {
+
+    @Autowired
+    public RedisCacheRegistrar(RedisOperation redisOperation) {
+        RedisCache.setRedisOperation(redisOperation);
+    }
+}
@@ -0,0 +1,54 @@
+package alanna.salamander.data.tape.cache;
+
+/**
+ * 触发器通知的一行数据变更
+ *
+ * @author alanna
+ * @since 0.1
+ */
+@SuppressWarnings("unused")
+public class RowChange {
+
+    /**
+     * 变更日志ID
+     */
+    private final long id;
+
+    /**
+     * 表名
+     */
+    private final String table;
+
+    /**
+     * INSERT, UPDATE, DELETE
+     */
+    private final String operation;
+
+    /**
+     * 触发器指定的键列的值
+     */
+    private final String key;
+
+    public RowChange(long id, String table, String operation, String key) {
+        this.id = id;
+        this.table = table;
+        this.operation = operation;
+        this.key = key;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getKey() {
+        return key;
+    }
+}
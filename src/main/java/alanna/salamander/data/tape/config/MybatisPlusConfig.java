@@ -1,13 +1,18 @@
 package alanna.salamander.data.tape.config;
 
+import alanna.salamander.data.tape.id.SequenceBlockIdGenerator;
+import alanna.salamander.data.tape.interceptor.QueryCoalescingInterceptor;
 import com.baomidou.mybatisplus.annotation.DbType;
 import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
 import com.baomidou.mybatisplus.extension.plugins.inner.PaginationInnerInterceptor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
+import javax.sql.DataSource;
+
 /**
  * mybatis-plus基础配置类
  *
@@ -26,6 +31,24 @@ public class MybatisPlusConfig {
     @Value("${salamander.orm.db-type:mysql}")
     private String dbType;
 
+    /**
+     * 号段主键的序列名称，序列步长必须等于号段大小
+     */
+    @Value("${salamander.data.sequence-id.sequence:salamander_id_seq}")
+    private String idSequence;
+
+    /**
+     * 号段大小
+     */
+    @Value("${salamander.data.sequence-id.block-size:1000}")
+    private long idBlockSize;
+
+    /**
+     * 合并查询时等待先到查询的最长时间，单位毫秒
+     */
+    @Value("${salamander.data.query-coalescing.timeout:30000}")
+    private long queryCoalescingTimeout;
+
     // 分页插件
     @Bean
     public MybatisPlusInterceptor paginationInterceptor() {
@@ -33,4 +56,18 @@ public class MybatisPlusConfig {
         interceptor.addInnerInterceptor(new PaginationInnerInterceptor(DbType.getDbType(dbType)));
         return interceptor;
     }
+
+    // 号段主键生成器
+    @ConditionalOnProperty(prefix = "salamander.data.sequence-id", name = "power", havingValue = "on")
+    @Bean
+    public SequenceBlockIdGenerator sequenceBlockIdGenerator(DataSource dataSource) {
+        return new SequenceBlockIdGenerator(dataSource, idSequence, idBlockSize);
+    }
+
+    // 合并并发执行中的相同查询
+    @ConditionalOnProperty(prefix = "salamander.data.query-coalescing", name = "power", havingValue = "on")
+    @Bean
+    public QueryCoalescingInterceptor queryCoalescingInterceptor() {
+        return new QueryCoalescingInterceptor(queryCoalescingTimeout);
+    }
 }
@@ -1,14 +1,22 @@
 package alanna.salamander.data.tape.config;
 
+import alanna.salamander.data.tape.injector.SalamanderSqlInjector;
+import alanna.salamander.data.tape.interceptor.ParallelGeometryInterceptor;
+import alanna.salamander.data.tape.util.GeometryCache;
 import alanna.salamander.data.tape.util.GeometryUtils;
+import alanna.salamander.data.tape.util.ParallelGeometryConverter;
 import com.alibaba.fastjson2.JSONObject;
 import com.baomidou.mybatisplus.autoconfigure.ConfigurationCustomizer;
+import com.baomidou.mybatisplus.core.injector.ISqlInjector;
 import mil.nga.sf.geojson.Geometry;
 import org.apache.ibatis.type.JdbcType;
 import org.apache.ibatis.type.TypeHandler;
 import org.postgis.PGgeometry;
 import org.postgresql.jdbc.PgArray;
 import org.postgresql.util.PGobject;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -31,14 +39,102 @@ import java.util.Objects;
 @Configuration
 public class PostgresqlMybatisPlusConfig {
 
+    /**
+     * 是否以二进制EWKB写入几何参数(on/off)，默认off，以WKT文本写入。
+     * 开启后参数类型为bytea，依赖PostGIS的bytea到geometry的隐式转换，
+     * 作为重载函数(如ST_Intersects)的参数时需在SQL中显式转换：{@code #{geom}::geometry}
+     */
+    @Value("${salamander.data.geometry.ewkb.power:off}")
+    private String geometryEwkbPower;
+
+    /**
+     * EWKB写入时携带的SRID，小于等于0时不写入SRID
+     */
+    @Value("${salamander.data.geometry.srid:0}")
+    private int geometrySrid;
+
+    /**
+     * 几何对象缓存的顶点总数上限
+     */
+    @Value("${salamander.data.geometry.cache.max-vertices:10000000}")
+    private long geometryCacheMaxVertices;
+
+    /**
+     * 顶点数小于该值的几何对象不缓存
+     */
+    @Value("${salamander.data.geometry.cache.min-vertices:1000}")
+    private int geometryCacheMinVertices;
+
+    /**
+     * 并行转换几何对象的数量阈值
+     */
+    @Value("${salamander.data.geometry.parallel.threshold:2000}")
+    private int geometryParallelThreshold;
+
+    /**
+     * 并行转换的并行度，默认为CPU核数
+     */
+    @Value("${salamander.data.geometry.parallel.parallelism:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}")
+    private int geometryParallelism;
+
+    /**
+     * 每个并行任务转换的数量
+     */
+    @Value("${salamander.data.geometry.parallel.chunk-size:256}")
+    private int geometryParallelChunkSize;
+
+    /**
+     * 已解码几何对象的缓存
+     */
+    @ConditionalOnProperty(prefix = "salamander.data.geometry.cache", name = "power", havingValue = "on")
+    @Bean
+    GeometryCache geometryCache() {
+        return new GeometryCache(geometryCacheMaxVertices, geometryCacheMinVertices);
+    }
+
+    /**
+     * 几何对象的延迟并行转换
+     */
+    @ConditionalOnProperty(prefix = "salamander.data.geometry.parallel", name = "power", havingValue = "on")
+    @Bean(destroyMethod = "shutdown")
+    ParallelGeometryConverter parallelGeometryConverter(ObjectProvider<GeometryCache> geometryCache) {
+        return new ParallelGeometryConverter(geometryParallelism, geometryParallelThreshold,
+                geometryParallelChunkSize, geometryCache.getIfAvailable());
+    }
+
+    @ConditionalOnProperty(prefix = "salamander.data.geometry.parallel", name = "power", havingValue = "on")
+    @Bean
+    ParallelGeometryInterceptor parallelGeometryInterceptor(ParallelGeometryConverter parallelGeometryConverter) {
+        return new ParallelGeometryInterceptor(parallelGeometryConverter);
+    }
+
+    /**
+     * Geometry处理器，开启缓存时可通过{@link GeometryTypeHandler#getGeometryCache()}获取命中统计
+     */
+    @Bean
+    GeometryTypeHandler geometryTypeHandler(ObjectProvider<GeometryCache> geometryCache,
+                                            ObjectProvider<ParallelGeometryConverter> parallelGeometryConverter) {
+        return new GeometryTypeHandler("on".equals(geometryEwkbPower), geometrySrid,
+                geometryCache.getIfAvailable(), parallelGeometryConverter.getIfAvailable());
+    }
+
+    /**
+     * 为UpsertMapper注入批量upsert方法
+     */
+    @ConditionalOnMissingBean(ISqlInjector.class)
+    @Bean
+    ISqlInjector salamanderSqlInjector() {
+        return new SalamanderSqlInjector();
+    }
+
     /**
      * 注册自定义处理器
      */
     @Bean
-    ConfigurationCustomizer mybatisConfigurationCustomizer() {
+    ConfigurationCustomizer mybatisConfigurationCustomizer(GeometryTypeHandler geometryTypeHandler) {
         return configuration -> {
             configuration.getTypeHandlerRegistry().register(JSONObject.class, JsonTypeHandler.class);
-            configuration.getTypeHandlerRegistry().register(Geometry.class, GeometryTypeHandler.class);
+            configuration.getTypeHandlerRegistry().register(Geometry.class, geometryTypeHandler);
             configuration.getTypeHandlerRegistry().register(List.class, JSONArrayTypeHandler.class);
             configuration.getTypeHandlerRegistry().register(PGobject.class, PGObjectTypeHandler.class);
         };
@@ -104,29 +200,93 @@ public class PostgresqlMybatisPlusConfig {
      */
     public static class GeometryTypeHandler implements TypeHandler<Geometry> {
 
+        /**
+         * 是否以二进制EWKB写入
+         */
+        private final boolean ewkbWrite;
+
+        /**
+         * EWKB写入时的SRID
+         */
+        private final int srid;
+
+        /**
+         * 已解码几何对象的缓存，为null时不缓存
+         */
+        private final GeometryCache geometryCache;
+
+        /**
+         * 几何对象的延迟并行转换，为null时逐行转换
+         */
+        private final ParallelGeometryConverter geometryConverter;
+
+        public GeometryTypeHandler() {
+            this(false, 0, null, null);
+        }
+
+        public GeometryTypeHandler(boolean ewkbWrite, int srid, GeometryCache geometryCache,
+                                   ParallelGeometryConverter geometryConverter) {
+            this.ewkbWrite = ewkbWrite;
+            this.srid = srid;
+            this.geometryCache = geometryCache;
+            this.geometryConverter = geometryConverter;
+        }
+
+        public GeometryCache getGeometryCache() {
+            return geometryCache;
+        }
+
         @Override
         public void setParameter(PreparedStatement ps, int i,
                                  Geometry parameter, JdbcType jdbcType) throws SQLException {
+            if (ewkbWrite && null != parameter) {
+                ps.setBytes(i, GeometryUtils.convert2EWKB(parameter, srid));
+                return;
+            }
             ps.setObject(i, GeometryUtils.convert2PGeometry(parameter));
         }
 
         @Override
         public Geometry getResult(ResultSet rs, String columnName) throws SQLException {
-
+            if (readsText()) {
+                return handlerText(rs.getString(columnName));
+            }
             return handlerPGeometry(rs.getObject(columnName));
         }
 
         @Override
         public Geometry getResult(ResultSet rs, int columnIndex) throws SQLException {
+            if (readsText()) {
+                return handlerText(rs.getString(columnIndex));
+            }
             return handlerPGeometry(rs.getObject(columnIndex));
-
         }
 
         @Override
         public Geometry getResult(CallableStatement cs, int columnIndex) throws SQLException {
+            if (readsText()) {
+                return handlerText(cs.getString(columnIndex));
+            }
             return handlerPGeometry(cs.getObject(columnIndex));
         }
 
+        /**
+         * 开启缓存或并行转换时，直接读取hex EWKB文本值
+         */
+        private boolean readsText() {
+            return null != geometryCache || null != geometryConverter;
+        }
+
+        private Geometry handlerText(String value) throws SQLException {
+            if (null != geometryConverter && geometryConverter.isDeferring()) {
+                return geometryConverter.defer(value);
+            }
+            if (null != geometryCache) {
+                return geometryCache.get(value);
+            }
+            return GeometryUtils.convertEWKB2GGeometry(value);
+        }
+
         private Geometry handlerPGeometry(Object object) throws SQLException {
             if (object instanceof PGgeometry) {
                 PGgeometry geom = (PGgeometry) object;
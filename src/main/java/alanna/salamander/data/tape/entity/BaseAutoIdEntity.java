@@ -14,7 +14,9 @@ import java.time.LocalDateTime;
  * @since 1.0
  */
 @SuppressWarnings({"unused", "UnusedReturnValue"})
-public abstract class BaseAutoIdEntity<T extends Serializable> {
+public abstract class BaseAutoIdEntity<T extends Serializable> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     /**
      * 主键ID，表的主键字段必须具有默认值。
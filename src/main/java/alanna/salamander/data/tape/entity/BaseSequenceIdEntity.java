@@ -0,0 +1,64 @@
+package alanna.salamander.data.tape.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 专为主键由客户端号段分配的表设计
+ * 主键由{@link alanna.salamander.data.tape.id.SequenceBlockIdGenerator}在插入前生成，
+ * 批量插入无需回查自增主键。
+ *
+ * @author alanna
+ * @since 0.1
+ */
+@SuppressWarnings({"unused", "UnusedReturnValue"})
+public abstract class BaseSequenceIdEntity<T extends Serializable> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 主键ID，插入前由号段分配。
+     */
+    @TableId(type = IdType.ASSIGN_ID)
+    private T id;
+
+    /**
+     * 数据创建时间
+     */
+    @TableField
+    private LocalDateTime createTime;
+
+    /**
+     * 数据修改时间
+     */
+    @TableField
+    private LocalDateTime updateTime;
+
+    public T getId() {
+        return id;
+    }
+
+    public void setId(T id) {
+        this.id = id;
+    }
+
+    public LocalDateTime getCreateTime() {
+        return createTime;
+    }
+
+    public void setCreateTime(LocalDateTime createTime) {
+        this.createTime = createTime;
+    }
+
+    public LocalDateTime getUpdateTime() {
+        return updateTime;
+    }
+
+    public void setUpdateTime(LocalDateTime updateTime) {
+        this.updateTime = updateTime;
+    }
+}
@@ -0,0 +1,160 @@
+package alanna.salamander.data.tape.id;
+
+import alanna.salamander.data.tape.entity.BaseSequenceIdEntity;
+import com.baomidou.mybatisplus.core.incrementer.DefaultIdentifierGenerator;
+import com.baomidou.mybatisplus.core.incrementer.IdentifierGenerator;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于PostgreSQL序列的号段(hi/lo)主键生成器
+ * <p>
+ * 序列的步长必须等于号段大小，每次nextval预留[value, value + blockSize)整段主键，
+ * 号段内的主键由内存计数器无锁分配，只有号段用尽时才访问一次数据库：
+ * <pre>
+ * CREATE SEQUENCE salamander_id_seq INCREMENT BY 1000;
+ * </pre>
+ * 首次分配号段时校验序列的步长，与号段大小不一致时直接失败，避免多个节点分配到重叠的号段。
+ * 主键在插入前即可确定，父子表数据可以完全批量插入。
+ * <p>
+ * 只有{@link BaseSequenceIdEntity}的子类使用号段主键，
+ * 其他{@code IdType.ASSIGN_ID}的实体仍由MyBatis-Plus默认的雪花算法生成主键。
+ *
+ * @author alanna
+ * @since 0.1
+ */
+@SuppressWarnings("unused")
+public class SequenceBlockIdGenerator implements IdentifierGenerator {
+
+    private final DataSource dataSource;
+
+    /**
+     * 序列名称
+     */
+    private final String sequence;
+
+    /**
+     * 号段大小，等于序列的步长
+     */
+    private final long blockSize;
+
+    /**
+     * 非号段主键实体使用的雪花算法生成器
+     */
+    private final IdentifierGenerator defaultGenerator = new DefaultIdentifierGenerator();
+
+    /**
+     * 当前号段
+     */
+    private volatile Block block = new Block(0, 0);
+
+    /**
+     * 序列步长是否已校验
+     */
+    private boolean incrementVerified;
+
+    public SequenceBlockIdGenerator(DataSource dataSource, String sequence, long blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        }
+        this.dataSource = dataSource;
+        this.sequence = sequence;
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public Number nextId(Object entity) {
+        if (entity instanceof BaseSequenceIdEntity) {
+            return nextId();
+        }
+        return defaultGenerator.nextId(entity);
+    }
+
+    /**
+     * 分配一个主键
+     *
+     * @return id
+     */
+    public long nextId() {
+        while (true) {
+            Block current = block;
+            long id = current.next.getAndIncrement();
+            if (id < current.end) {
+                return id;
+            }
+            refill(current);
+        }
+    }
+
+    /**
+     * 当前号段用尽时从序列预留新号段，其他线程已经换过号段时直接返回
+     */
+    private synchronized void refill(Block exhausted) {
+        if (block != exhausted) {
+            return;
+        }
+        if (!incrementVerified) {
+            verifyIncrement();
+            incrementVerified = true;
+        }
+        long start = nextval();
+        block = new Block(start, start + blockSize);
+    }
+
+    private long nextval() {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement("SELECT nextval(?::regclass)")) {
+            ps.setString(1, sequence);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to allocate id block from sequence " + sequence, e);
+        }
+    }
+
+    /**
+     * 校验序列步长等于号段大小，步长不一致时不同节点(或重启前后)分配的号段会重叠
+     */
+    private void verifyIncrement() {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(
+                     "SELECT seqincrement FROM pg_sequence WHERE seqrelid = ?::regclass")) {
+            ps.setString(1, sequence);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    throw new IllegalStateException("Sequence not found: " + sequence);
+                }
+                long increment = rs.getLong(1);
+                if (increment != blockSize) {
+                    throw new IllegalStateException("Sequence " + sequence + " increments by " + increment
+                            + " but block size is " + blockSize + ", ALTER SEQUENCE " + sequence
+                            + " INCREMENT BY " + blockSize);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to read increment of sequence " + sequence, e);
+        }
+    }
+
+    /**
+     * 号段，next达到end时用尽
+     */
+    private static final class Block {
+
+        private final AtomicLong next;
+
+        private final long end;
+
+        private Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
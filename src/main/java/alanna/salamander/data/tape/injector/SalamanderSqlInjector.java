@@ -0,0 +1,28 @@
+package alanna.salamander.data.tape.injector;
+
+import alanna.salamander.data.tape.entity.BaseAutoIdEntity;
+import alanna.salamander.data.tape.mapper.UpsertMapper;
+import com.baomidou.mybatisplus.core.injector.AbstractMethod;
+import com.baomidou.mybatisplus.core.injector.DefaultSqlInjector;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+
+import java.util.List;
+
+/**
+ * 在默认方法之外，为{@link UpsertMapper}注入{@link UpsertBatch}
+ *
+ * @author alanna
+ * @since 0.1
+ */
+public class SalamanderSqlInjector extends DefaultSqlInjector {
+
+    @Override
+    public List<AbstractMethod> getMethodList(Class<?> mapperClass, TableInfo tableInfo) {
+        List<AbstractMethod> methodList = super.getMethodList(mapperClass, tableInfo);
+        if (UpsertMapper.class.isAssignableFrom(mapperClass)
+                && BaseAutoIdEntity.class.isAssignableFrom(tableInfo.getEntityType())) {
+            methodList.add(new UpsertBatch());
+        }
+        return methodList;
+    }
+}
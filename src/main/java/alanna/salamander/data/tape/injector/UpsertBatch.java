@@ -0,0 +1,87 @@
+package alanna.salamander.data.tape.injector;
+
+import com.baomidou.mybatisplus.core.injector.AbstractMethod;
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.toolkit.sql.SqlScriptUtils;
+import org.apache.ibatis.executor.keygen.NoKeyGenerator;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlSource;
+
+/**
+ * PostgreSQL多行upsert
+ * <p>
+ * 生成 {@code INSERT ... VALUES (...), (...) ON CONFLICT (${conflict}) DO UPDATE SET ...}，
+ * 一次执行即完成一批数据的写入，不需要逐行查询。
+ * 插入和更新的列由参数fields、updates(属性名集合)决定，同一批数据使用相同的列，
+ * 由{@link alanna.salamander.data.tape.mapper.UpsertMapper}按字段的插入/更新策略分组后传入：
+ * 未插入的列使用数据库默认值，未更新的列保持原值。updates为空时冲突行不更新(DO NOTHING)。
+ * createTime/updateTime由SQL维护：插入时均为now()，冲突更新时只更新updateTime。
+ * 主键由数据库生成，不参与插入和更新。
+ *
+ * @author alanna
+ * @since 0.1
+ */
+public class UpsertBatch extends AbstractMethod {
+
+    public static final String METHOD_NAME = "upsertBatch";
+
+    private static final String CREATE_TIME = "createTime";
+
+    private static final String UPDATE_TIME = "updateTime";
+
+    public UpsertBatch() {
+        super(METHOD_NAME);
+    }
+
+    @Override
+    public MappedStatement injectMappedStatement(Class<?> mapperClass, Class<?> modelClass, TableInfo tableInfo) {
+        StringBuilder columns = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        StringBuilder updates = new StringBuilder();
+        String updateTime = null;
+        for (TableFieldInfo field : tableInfo.getFieldList()) {
+            if (CREATE_TIME.equals(field.getProperty())) {
+                columns.append(field.getColumn()).append(COMMA);
+                values.append("now()").append(COMMA);
+            } else if (UPDATE_TIME.equals(field.getProperty())) {
+                columns.append(field.getColumn()).append(COMMA);
+                values.append("now()").append(COMMA);
+                updateTime = field.getColumn() + " = now()";
+            } else {
+                String included = "fields.contains('" + field.getProperty() + "')";
+                columns.append(SqlScriptUtils.convertIf(field.getColumn() + COMMA, included, false));
+                values.append(SqlScriptUtils.convertIf(SqlScriptUtils.safeParam(ENTITY_DOT + field.getProperty(),
+                        field.getMapping()) + COMMA, included, false));
+                updates.append(SqlScriptUtils.convertIf(field.getColumn() + " = EXCLUDED." + field.getColumn() + COMMA,
+                        "updates.contains('" + field.getProperty() + "')", false));
+            }
+        }
+        if (null != updateTime) {
+            updates.append(updateTime);
+        }
+        String valuesScript = SqlScriptUtils.convertForeach(
+                SqlScriptUtils.convertTrim(values.toString(), LEFT_BRACKET, RIGHT_BRACKET, null, COMMA),
+                "list", null, ENTITY, COMMA);
+        String sql = "<script>INSERT INTO " + tableInfo.getTableName()
+                + SqlScriptUtils.convertTrim(columns.toString(), " (", ")", null, COMMA)
+                + " VALUES " + valuesScript
+                + " ON CONFLICT (${conflict}) "
+                + SqlScriptUtils.convertChoose("updates.isEmpty()", "DO NOTHING",
+                SqlScriptUtils.convertTrim(updates.toString(), "DO UPDATE SET ", null, null, COMMA))
+                + "</script>";
+        SqlSource sqlSource = languageDriver.createSqlSource(configuration, sql, modelClass);
+        return this.addInsertMappedStatement(mapperClass, modelClass, methodName, sqlSource,
+                NoKeyGenerator.INSTANCE, null, null);
+    }
+
+    /**
+     * 是否为由SQL维护的createTime/updateTime
+     *
+     * @param property 属性名
+     * @return boolean
+     */
+    public static boolean isTimeField(String property) {
+        return CREATE_TIME.equals(property) || UPDATE_TIME.equals(property);
+    }
+}
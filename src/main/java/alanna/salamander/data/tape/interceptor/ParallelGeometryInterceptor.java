@@ -0,0 +1,72 @@
+package alanna.salamander.data.tape.interceptor;
+
+import alanna.salamander.data.tape.util.ParallelGeometryConverter;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+import java.sql.SQLException;
+
+/**
+ * 在结果集映射期间延迟几何对象的转换，映射完成后统一(并行)转换
+ * <p>
+ * 只作用于返回List的查询。使用ResultHandler逐行处理的查询(如流式导出、selectMap)
+ * 在每一行交给ResultHandler时就需要完整的几何对象，因此不延迟，逐行转换；
+ * 游标查询不经过该拦截器，同样逐行转换。
+ * <p>
+ * 插件按顺序加入拦截器链，后加入的位于外层。该拦截器最先加入、位于最内层，
+ * 外层插件(如{@link QueryCoalescingInterceptor})拿到的结果中几何对象已经回填。
+ *
+ * @author alanna
+ * @since 0.1
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class})
+})
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ParallelGeometryInterceptor implements Interceptor {
+
+    private final ParallelGeometryConverter geometryConverter;
+
+    public ParallelGeometryInterceptor(ParallelGeometryConverter geometryConverter) {
+        this.geometryConverter = geometryConverter;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        if (Executor.NO_RESULT_HANDLER != invocation.getArgs()[3]) {
+            ParallelGeometryConverter.Batch previous = geometryConverter.suspend();
+            try {
+                return invocation.proceed();
+            } finally {
+                geometryConverter.end(previous);
+            }
+        }
+        ParallelGeometryConverter.Batch previous = geometryConverter.begin();
+        try {
+            Object result = invocation.proceed();
+            try {
+                geometryConverter.complete();
+            } catch (SQLException | RuntimeException e) {
+                // 未回填的结果已进入一级缓存，清除后同一SqlSession中的重复查询重新执行
+                ((Executor) invocation.getTarget()).clearLocalCache();
+                throw e;
+            }
+            return result;
+        } finally {
+            geometryConverter.end(previous);
+        }
+    }
+}
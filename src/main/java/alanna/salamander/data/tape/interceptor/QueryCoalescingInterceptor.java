@@ -0,0 +1,270 @@
+package alanna.salamander.data.tape.interceptor;
+
+import com.baomidou.mybatisplus.core.toolkit.ParameterUtils;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ClassUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 合并并发执行中的相同查询
+ * <p>
+ * 同一MappedStatement、相同绑定参数的SELECT正在执行时，后到的调用不再访问数据库，
+ * 而是等待先到的调用完成并获得其结果的一份深拷贝(Java序列化)，各调用方拿到的对象互不影响。
+ * <p>
+ * 只有确认结果可以拷贝的语句才会合并：结果类型不可序列化的语句从不合并；
+ * 其余语句第一次执行时试探序列化一次结果，成功后才允许后到的调用等待。
+ * 已允许合并的语句若某次结果序列化失败，本次的等待者共享结果的只读视图，之后该语句不再合并。
+ * 先到的调用失败时，等待者抛出同一个异常；等待超时时，等待者自行执行查询。
+ * <p>
+ * 以下情况不合并，直接执行：
+ * <ul>
+ *     <li>处于非只读事务中(事务内可能读到自己未提交的写入)</li>
+ *     <li>非SELECT、存储过程、flushCache=true或使用ResultHandler的查询</li>
+ *     <li>分页查询</li>
+ * </ul>
+ * 该拦截器最后加入拦截器链、位于最外层，拷贝的是其他插件(如{@link ParallelGeometryInterceptor})处理完成后的结果。
+ *
+ * @author alanna
+ * @since 0.1
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class})
+})
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class QueryCoalescingInterceptor implements Interceptor {
+
+    /**
+     * 执行中的查询
+     */
+    private final ConcurrentHashMap<CacheKey, InFlight> inFlights = new ConcurrentHashMap<>();
+
+    /**
+     * 语句的结果是否可以拷贝，key为MappedStatement id，未知时不存在
+     */
+    private final ConcurrentHashMap<String, Boolean> copyable = new ConcurrentHashMap<>();
+
+    /**
+     * 等待先到调用的最长时间，单位毫秒
+     */
+    private final long timeout;
+
+    public QueryCoalescingInterceptor(long timeout) {
+        this.timeout = timeout;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object[] args = invocation.getArgs();
+        MappedStatement ms = (MappedStatement) args[0];
+        Object parameter = args[1];
+        if (!coalescible(ms, parameter, (ResultHandler<?>) args[3])) {
+            return invocation.proceed();
+        }
+        Boolean canCopy = copyable.get(ms.getId());
+        if (null == canCopy && !serializableResultType(ms)) {
+            copyable.put(ms.getId(), Boolean.FALSE);
+            canCopy = Boolean.FALSE;
+        }
+        if (Boolean.FALSE.equals(canCopy)) {
+            return invocation.proceed();
+        }
+        CacheKey cacheKey;
+        if (args.length == 6) {
+            cacheKey = (CacheKey) args[4];
+        } else {
+            BoundSql boundSql = ms.getBoundSql(parameter);
+            cacheKey = ((Executor) invocation.getTarget()).createCacheKey(ms, parameter, (RowBounds) args[2], boundSql);
+        }
+
+        InFlight inFlight = new InFlight();
+        InFlight leader = inFlights.putIfAbsent(cacheKey, inFlight);
+        if (null == leader) {
+            return lead(invocation, ms.getId(), cacheKey, inFlight, null == canCopy);
+        }
+        // 尚未确认可以拷贝时不等待，避免等待后拿不到拷贝又重新执行
+        if (Boolean.TRUE.equals(canCopy) && leader.join()) {
+            List<?> shared = leader.await(timeout);
+            if (null != shared) {
+                return shared;
+            }
+        }
+        return invocation.proceed();
+    }
+
+    private Object lead(Invocation invocation, String statementId, CacheKey cacheKey, InFlight inFlight,
+                        boolean probe) throws Throwable {
+        Object result = null;
+        Throwable error = null;
+        try {
+            result = invocation.proceed();
+            return result;
+        } catch (Throwable e) {
+            error = e;
+            throw e;
+        } finally {
+            inFlights.remove(cacheKey, inFlight);
+            Boolean serialized = inFlight.complete(result, error, probe);
+            if (null != serialized) {
+                copyable.put(statementId, serialized);
+            }
+        }
+    }
+
+    private static boolean coalescible(MappedStatement ms, Object parameter, ResultHandler<?> resultHandler) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return false;
+        }
+        return SqlCommandType.SELECT == ms.getSqlCommandType()
+                && StatementType.CALLABLE != ms.getStatementType()
+                && !ms.isFlushCacheRequired()
+                && Executor.NO_RESULT_HANDLER == resultHandler
+                && ParameterUtils.findPage(parameter).isEmpty();
+    }
+
+    /**
+     * 结果类型为具体类时必须可序列化，接口(如Map)由第一次执行的结果确认
+     */
+    private static boolean serializableResultType(MappedStatement ms) {
+        for (ResultMap resultMap : ms.getResultMaps()) {
+            Class<?> type = resultMap.getType();
+            if (!type.isPrimitive() && !type.isInterface() && !Serializable.class.isAssignableFrom(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 一次执行中的查询及其等待者
+     */
+    private static class InFlight {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private int followers;
+
+        private boolean completed;
+
+        /**
+         * 序列化后的结果
+         */
+        private byte[] serialized;
+
+        /**
+         * 结果无法拷贝时共享给等待者的只读视图
+         */
+        private List<?> view;
+
+        /**
+         * 先到的调用抛出的异常
+         */
+        private Throwable error;
+
+        /**
+         * 登记为等待者，查询已完成时返回false
+         */
+        synchronized boolean join() {
+            if (completed) {
+                return false;
+            }
+            followers++;
+            return true;
+        }
+
+        /**
+         * 结果在返回给先到的调用前序列化，避免其修改结果影响拷贝
+         *
+         * @param probe 是否在没有等待者时也试探序列化
+         * @return 是否可序列化，未尝试时为null
+         */
+        Boolean complete(Object result, Throwable error, boolean probe) {
+            Boolean serializable = null;
+            synchronized (this) {
+                completed = true;
+                this.error = error;
+                if (result instanceof List && (followers > 0 || probe)) {
+                    serialized = serialize(new ArrayList<>((List<?>) result));
+                    serializable = null != serialized;
+                    if (followers > 0) {
+                        view = Collections.unmodifiableList((List<?>) result);
+                    }
+                }
+            }
+            done.countDown();
+            return serializable;
+        }
+
+        /**
+         * 等待先到的调用完成
+         *
+         * @return 结果的拷贝或只读视图，超时时为null
+         */
+        List<?> await(long timeout) throws Throwable {
+            if (!done.await(timeout, TimeUnit.MILLISECONDS)) {
+                return null;
+            }
+            if (null != error) {
+                throw error;
+            }
+            if (null != serialized) {
+                List<?> copy = deserialize(serialized);
+                if (null != copy) {
+                    return copy;
+                }
+            }
+            return view;
+        }
+
+        private static byte[] serialize(ArrayList<?> result) {
+            try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                 ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+                oos.writeObject(result);
+                oos.flush();
+                return bos.toByteArray();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        private static List<?> deserialize(byte[] value) {
+            try (ObjectInputStream ois = new ConfigurableObjectInputStream(
+                    new ByteArrayInputStream(value), ClassUtils.getDefaultClassLoader())) {
+                return (List<?>) ois.readObject();
+            } catch (IOException | ClassNotFoundException e) {
+                return null;
+            }
+        }
+    }
+}
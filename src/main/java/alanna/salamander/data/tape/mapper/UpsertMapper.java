@@ -0,0 +1,165 @@
+package alanna.salamander.data.tape.mapper;
+
+import alanna.salamander.data.tape.entity.BaseAutoIdEntity;
+import alanna.salamander.data.tape.injector.UpsertBatch;
+import com.baomidou.mybatisplus.annotation.FieldStrategy;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 支持批量upsert的Mapper，仅用于PostgreSQL
+ * <p>
+ * 每一批数据生成一条多行的 {@code INSERT ... ON CONFLICT ... DO UPDATE}，一次往返完成，
+ * 不经过saveOrUpdate的逐行查询。冲突列必须存在唯一约束，且同一批数据中冲突列的值不能重复。
+ * <p>
+ * 与insert/updateById一致，字段按其插入/更新策略写入(默认NOT_NULL)：
+ * 值为null的字段不插入(使用数据库默认值)，冲突时也不覆盖原值。
+ * 写入列不同的数据分为不同的语句执行，插入策略为NEVER的字段冲突时同样不更新。
+ * 冲突列不受插入策略影响，总是写入，且值不能为null(null不与任何值冲突，会插入重复数据)。
+ * 主键由数据库生成，不能作为冲突列。
+ *
+ * @param <T> 实体类型
+ * @author alanna
+ * @since 0.1
+ */
+@SuppressWarnings("unused")
+public interface UpsertMapper<T extends BaseAutoIdEntity<?>> extends BaseMapper<T> {
+
+    /**
+     * 默认每批数据的行数
+     */
+    int DEFAULT_CHUNK_SIZE = 500;
+
+    /**
+     * PostgreSQL单条语句的绑定参数上限
+     */
+    int MAX_BIND_PARAMETERS = 32767;
+
+    /**
+     * 单条多行upsert，由{@link UpsertBatch}注入
+     * 一般通过{@link #upsert(Collection, int, String...)}调用
+     *
+     * @param list     实体数据
+     * @param conflict 冲突列，逗号分隔，直接拼接到SQL中
+     * @param fields   插入的属性
+     * @param updates  冲突时更新的属性，必须包含在fields中
+     * @return 影响行数
+     */
+    int upsertBatch(@Param("list") Collection<T> list, @Param("conflict") String conflict,
+                    @Param("fields") Set<String> fields, @Param("updates") Set<String> updates);
+
+    /**
+     * 按默认批大小upsert
+     *
+     * @param entities        实体数据
+     * @param conflictColumns 冲突列
+     * @return 影响行数
+     */
+    default int upsert(Collection<T> entities, String... conflictColumns) {
+        return upsert(entities, DEFAULT_CHUNK_SIZE, conflictColumns);
+    }
+
+    /**
+     * 分批upsert
+     *
+     * @param entities        实体数据
+     * @param chunkSize       每批的行数，超过绑定参数上限时自动缩小
+     * @param conflictColumns 冲突列，必须是表中的非主键列
+     * @return 影响行数
+     */
+    default int upsert(Collection<T> entities, int chunkSize, String... conflictColumns) {
+        if (null == entities || entities.isEmpty()) {
+            return 0;
+        }
+        if (null == conflictColumns || conflictColumns.length == 0) {
+            throw new IllegalArgumentException("Conflict columns must not be empty");
+        }
+        TableInfo tableInfo = TableInfoHelper.getTableInfo(entities.iterator().next().getClass());
+        if (null == tableInfo) {
+            throw new IllegalArgumentException("No table info for " + entities.iterator().next().getClass());
+        }
+        Map<String, String> properties = new HashMap<>();
+        for (TableFieldInfo field : tableInfo.getFieldList()) {
+            properties.put(field.getColumn(), field.getProperty());
+        }
+        Map<String, String> conflictProperties = new LinkedHashMap<>();
+        for (String conflictColumn : conflictColumns) {
+            if (conflictColumn.equals(tableInfo.getKeyColumn())) {
+                throw new IllegalArgumentException("Key column is generated by the database and can not be a conflict column: "
+                        + conflictColumn);
+            }
+            String property = properties.get(conflictColumn);
+            if (null == property || UpsertBatch.isTimeField(property)) {
+                throw new IllegalArgumentException("Unknown conflict column: " + conflictColumn);
+            }
+            conflictProperties.put(conflictColumn, property);
+        }
+        String conflict = String.join(",", conflictColumns);
+
+        // 按写入的列分组，同一组的数据使用同一条语句
+        Map<List<Set<String>>, List<T>> groups = new LinkedHashMap<>();
+        for (T entity : entities) {
+            Set<String> fields = new HashSet<>();
+            Set<String> updates = new HashSet<>();
+            conflictProperties.forEach((column, property) -> {
+                if (null == tableInfo.getPropertyValue(entity, property)) {
+                    throw new IllegalArgumentException("Conflict column must not be null: " + column);
+                }
+                fields.add(property);
+            });
+            for (TableFieldInfo field : tableInfo.getFieldList()) {
+                if (UpsertBatch.isTimeField(field.getProperty())) {
+                    continue;
+                }
+                Object value = tableInfo.getPropertyValue(entity, field.getProperty());
+                if (writable(field.getInsertStrategy(), value)) {
+                    fields.add(field.getProperty());
+                    if (writable(field.getUpdateStrategy(), value)) {
+                        updates.add(field.getProperty());
+                    }
+                }
+            }
+            groups.computeIfAbsent(List.of(fields, updates), key -> new ArrayList<>()).add(entity);
+        }
+
+        int affected = 0;
+        for (Map.Entry<List<Set<String>>, List<T>> group : groups.entrySet()) {
+            Set<String> fields = group.getKey().get(0);
+            Set<String> updates = group.getKey().get(1);
+            int size = Math.max(1, Math.min(chunkSize, MAX_BIND_PARAMETERS / Math.max(1, fields.size())));
+            List<T> rows = group.getValue();
+            for (int from = 0; from < rows.size(); from += size) {
+                affected += upsertBatch(rows.subList(from, Math.min(rows.size(), from + size)), conflict, fields, updates);
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * 按字段策略判断是否写入该值，DEFAULT按NOT_NULL处理
+     */
+    private static boolean writable(FieldStrategy strategy, Object value) {
+        switch (strategy) {
+            case IGNORED:
+                return true;
+            case NEVER:
+                return false;
+            case NOT_EMPTY:
+                return null != value && !(value instanceof CharSequence && ((CharSequence) value).length() == 0);
+            default:
+                return null != value;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package alanna.salamander.data.tape.util;
+
+import mil.nga.sf.Geometry;
+import mil.nga.sf.GeometryCollection;
+import mil.nga.sf.LineString;
+import mil.nga.sf.MultiLineString;
+import mil.nga.sf.MultiPoint;
+import mil.nga.sf.MultiPolygon;
+import mil.nga.sf.Point;
+import mil.nga.sf.Polygon;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * 将simple-features几何对象直接编码为PostGIS的EWKB(little endian)
+ * <p>
+ * 只支持GeoJSON能够表达的七种几何类型。
+ *
+ * @author alanna
+ * @since 0.1
+ */
+public class EWKBWriter {
+
+    private static final byte NDR = 1;
+
+    private static final int WKB_POINT = 1;
+    private static final int WKB_LINESTRING = 2;
+    private static final int WKB_POLYGON = 3;
+    private static final int WKB_MULTIPOINT = 4;
+    private static final int WKB_MULTILINESTRING = 5;
+    private static final int WKB_MULTIPOLYGON = 6;
+    private static final int WKB_GEOMETRYCOLLECTION = 7;
+
+    private static final int Z_FLAG = 0x80000000;
+    private static final int M_FLAG = 0x40000000;
+    private static final int SRID_FLAG = 0x20000000;
+
+    /**
+     * 写入的SRID，小于等于0时不写SRID
+     */
+    private final int srid;
+
+    public EWKBWriter(int srid) {
+        this.srid = srid;
+    }
+
+    /**
+     * 编码几何对象
+     *
+     * @param geometry simple-features geometry
+     * @return EWKB bytes
+     */
+    public byte[] write(Geometry geometry) {
+        boolean z = geometry.hasZ();
+        boolean m = geometry.hasM();
+        boolean withSrid = srid > 0;
+        ByteBuffer buffer = ByteBuffer.allocate(sizeOf(geometry, z, m) + (withSrid ? 4 : 0))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        writeGeometry(buffer, geometry, z, m, withSrid);
+        return buffer.array();
+    }
+
+    private void writeGeometry(ByteBuffer buffer, Geometry geometry, boolean z, boolean m, boolean withSrid) {
+        int type = typeCode(geometry);
+        if (z) {
+            type |= Z_FLAG;
+        }
+        if (m) {
+            type |= M_FLAG;
+        }
+        if (withSrid) {
+            type |= SRID_FLAG;
+        }
+        buffer.put(NDR);
+        buffer.putInt(type);
+        if (withSrid) {
+            buffer.putInt(srid);
+        }
+        if (geometry instanceof Point) {
+            writePoint(buffer, (Point) geometry, z, m);
+        } else if (geometry instanceof Polygon) {
+            writeRings(buffer, ((Polygon) geometry).getRings(), z, m);
+        } else if (geometry instanceof LineString) {
+            writePoints(buffer, ((LineString) geometry).getPoints(), z, m);
+        } else {
+            List<? extends Geometry> children = ((GeometryCollection<?>) geometry).getGeometries();
+            buffer.putInt(children.size());
+            for (Geometry child : children) {
+                writeGeometry(buffer, child, z, m, false);
+            }
+        }
+    }
+
+    private void writeRings(ByteBuffer buffer, List<LineString> rings, boolean z, boolean m) {
+        buffer.putInt(rings.size());
+        for (LineString ring : rings) {
+            writePoints(buffer, ring.getPoints(), z, m);
+        }
+    }
+
+    private void writePoints(ByteBuffer buffer, List<Point> points, boolean z, boolean m) {
+        buffer.putInt(points.size());
+        for (Point point : points) {
+            writePoint(buffer, point, z, m);
+        }
+    }
+
+    private void writePoint(ByteBuffer buffer, Point point, boolean z, boolean m) {
+        if (point.isEmpty()) {
+            // PostGIS以NaN坐标表示POINT EMPTY
+            buffer.putDouble(Double.NaN);
+            buffer.putDouble(Double.NaN);
+        } else {
+            buffer.putDouble(point.getX());
+            buffer.putDouble(point.getY());
+        }
+        if (z) {
+            buffer.putDouble(ordinate(point.getZ()));
+        }
+        if (m) {
+            buffer.putDouble(ordinate(point.getM()));
+        }
+    }
+
+    private static double ordinate(Double value) {
+        return null == value ? Double.NaN : value;
+    }
+
+    private static int sizeOf(Geometry geometry, boolean z, boolean m) {
+        int header = 1 + 4;
+        int pointSize = 8 * (2 + (z ? 1 : 0) + (m ? 1 : 0));
+        switch (typeCode(geometry)) {
+            case WKB_POINT:
+                return header + pointSize;
+            case WKB_LINESTRING:
+                return header + 4 + ((LineString) geometry).numPoints() * pointSize;
+            case WKB_POLYGON:
+                int polygonSize = header + 4;
+                for (LineString ring : ((Polygon) geometry).getRings()) {
+                    polygonSize += 4 + ring.numPoints() * pointSize;
+                }
+                return polygonSize;
+            default:
+                int collectionSize = header + 4;
+                for (Geometry child : ((GeometryCollection<?>) geometry).getGeometries()) {
+                    collectionSize += sizeOf(child, z, m);
+                }
+                return collectionSize;
+        }
+    }
+
+    private static int typeCode(Geometry geometry) {
+        if (geometry instanceof Point) {
+            return WKB_POINT;
+        }
+        if (geometry instanceof Polygon) {
+            return WKB_POLYGON;
+        }
+        if (geometry instanceof LineString) {
+            return WKB_LINESTRING;
+        }
+        if (geometry instanceof MultiPoint) {
+            return WKB_MULTIPOINT;
+        }
+        if (geometry instanceof MultiLineString) {
+            return WKB_MULTILINESTRING;
+        }
+        if (geometry instanceof MultiPolygon) {
+            return WKB_MULTIPOLYGON;
+        }
+        if (geometry instanceof GeometryCollection) {
+            return WKB_GEOMETRYCOLLECTION;
+        }
+        throw new IllegalArgumentException("Unsupported geometry type: " + geometry.getGeometryType());
+    }
+}
@@ -0,0 +1,152 @@
+package alanna.salamander.data.tape.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import mil.nga.sf.geojson.FeatureConverter;
+import mil.nga.sf.geojson.Geometry;
+import org.postgis.PGgeometry;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 已解码几何对象的缓存
+ * <p>
+ * 以PostGIS返回的原始EWKB(hex)的SHA-256为key，按顶点数加权淘汰。
+ * 用于反复关联同一批行政区划、区域等大面的查询，避免每一行都重新解码。
+ * <p>
+ * 缓存中的实例不对外暴露，每次返回的都是其深拷贝，调用方修改返回值不影响缓存和其他行。
+ * 拷贝只复制坐标，开销远小于重新解码。
+ * <p>
+ * 二维坐标在EWKB(hex)中占32个字符，长度不足minVertices * 32的值不可能达到最小顶点数，
+ * 直接解码，不查询缓存，也不计入命中统计。
+ *
+ * @author alanna
+ * @since 0.1
+ */
+@SuppressWarnings("unused")
+public class GeometryCache {
+
+    /**
+     * 缓存的几何对象及其顶点数
+     */
+    private static final class Entry {
+
+        private final Geometry geometry;
+
+        private final int vertices;
+
+        private Entry(Geometry geometry, int vertices) {
+            this.geometry = geometry;
+            this.vertices = vertices;
+        }
+    }
+
+    private final Cache<ByteBuffer, Entry> cache;
+
+    /**
+     * 顶点数小于该值的几何对象不进入缓存
+     */
+    private final int minVertices;
+
+    /**
+     * 长度小于该值的hex EWKB不查询缓存
+     */
+    private final long minLength;
+
+    /**
+     * 生成GeometryCache
+     *
+     * @param maxVertices 缓存的顶点总数上限
+     * @param minVertices 进入缓存的最小顶点数
+     */
+    public GeometryCache(long maxVertices, int minVertices) {
+        this(maxVertices, minVertices, ForkJoinPool.commonPool());
+    }
+
+    GeometryCache(long maxVertices, int minVertices, Executor executor) {
+        this.minVertices = minVertices;
+        this.minLength = minVertices * 32L;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxVertices)
+                .<ByteBuffer, Entry>weigher((key, entry) -> entry.vertices)
+                .executor(executor)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 解码PostGIS的几何值，命中缓存时返回缓存实例的拷贝
+     *
+     * @param value PostGIS geometry的文本值(hex EWKB)
+     * @return GeoJSON-Geometry
+     * @throws SQLException SQLException
+     */
+    public Geometry get(String value) throws SQLException {
+        if (null == value) {
+            return null;
+        }
+        if (value.length() < minLength) {
+            return GeometryUtils.convertEWKB2GGeometry(value);
+        }
+        ByteBuffer key = digest(value);
+        Entry entry = cache.getIfPresent(key);
+        if (null != entry) {
+            return copy(entry.geometry);
+        }
+        PGgeometry pGeometry = new PGgeometry(value);
+        Geometry geometry = GeometryUtils.convert2GGeometry(pGeometry);
+        int vertices = pGeometry.getGeometry().numPoints();
+        if (null != geometry && vertices >= minVertices) {
+            cache.put(key, new Entry(geometry, vertices));
+            return copy(geometry);
+        }
+        return geometry;
+    }
+
+    /**
+     * 命中、未命中、淘汰等统计数据
+     *
+     * @return CacheStats
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * 当前缓存的顶点总数
+     *
+     * @return vertices
+     */
+    public long weightedSize() {
+        return cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static Geometry copy(Geometry geometry) {
+        return FeatureConverter.toGeometry(geometry.getGeometry().copy());
+    }
+
+    private static ByteBuffer digest(String value) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            return ByteBuffer.wrap(messageDigest.digest(value.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
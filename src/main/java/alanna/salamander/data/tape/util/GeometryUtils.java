@@ -39,6 +39,20 @@ public class GeometryUtils {
         }
     }
 
+    /**
+     * EWKB(hex) to GeoJSON
+     *
+     * @param value PostGIS geometry的文本值(hex EWKB)
+     * @return GeoJSON-Geometry
+     * @throws SQLException SQLException
+     */
+    public static Geometry convertEWKB2GGeometry(String value) throws SQLException {
+        if (null == value) {
+            return null;
+        }
+        return convert2GGeometry(new PGgeometry(value));
+    }
+
     /**
      * WKT to GeoJSON
      *
@@ -74,4 +88,24 @@ public class GeometryUtils {
         pGeometry.setValue(new WKTWriter().write(geometry));
         return pGeometry;
     }
+
+    /**
+     * GeoJSON to EWKB
+     * 直接从坐标编码，不经过WKT文本的格式化与解析
+     *
+     * @param gGeometry GeoJSON-Geometry
+     * @param srid      SRID, 小于等于0时不写入SRID
+     * @return EWKB bytes
+     * @throws SQLException SQLException
+     */
+    public static byte[] convert2EWKB(Geometry gGeometry, int srid) throws SQLException {
+        if (null == gGeometry) {
+            return null;
+        }
+        try {
+            return new EWKBWriter(srid).write(gGeometry.getGeometry());
+        } catch (IllegalArgumentException e) {
+            throw new SQLException(e);
+        }
+    }
 }
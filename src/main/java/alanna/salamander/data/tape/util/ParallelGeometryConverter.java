@@ -0,0 +1,271 @@
+package alanna.salamander.data.tape.util;
+
+import mil.nga.sf.geojson.Geometry;
+import mil.nga.sf.geojson.GeometryCollection;
+import mil.nga.sf.geojson.LineString;
+import mil.nga.sf.geojson.MultiLineString;
+import mil.nga.sf.geojson.MultiPoint;
+import mil.nga.sf.geojson.MultiPolygon;
+import mil.nga.sf.geojson.Point;
+import mil.nga.sf.geojson.Polygon;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * 几何对象的延迟并行转换
+ * <p>
+ * 结果集映射期间，{@link #defer(String)}只读取EWKB头部，返回对应类型的空几何对象并记录原始值；
+ * 结果集映射完成后，{@link #complete()}统一转换并回填这些对象。
+ * 数量达到阈值时按块分发到有界的ForkJoinPool并行转换，否则在当前线程顺序转换。
+ * 回填的是映射时返回的同一个对象，因此结果的顺序和对象引用都保持不变。
+ *
+ * @author alanna
+ * @since 0.1
+ */
+@SuppressWarnings("unused")
+public class ParallelGeometryConverter {
+
+    private static final int Z_FLAG = 0x80000000;
+    private static final int M_FLAG = 0x40000000;
+
+    /**
+     * 当前线程正在映射的结果集中待转换的几何对象
+     */
+    private final ThreadLocal<Batch> batchHolder = new ThreadLocal<>();
+
+    private final ForkJoinPool pool;
+
+    /**
+     * 达到该数量时并行转换
+     */
+    private final int threshold;
+
+    /**
+     * 每个并行任务转换的数量
+     */
+    private final int chunkSize;
+
+    /**
+     * 已解码几何对象的缓存，可为null
+     */
+    private final GeometryCache geometryCache;
+
+    /**
+     * 生成ParallelGeometryConverter
+     *
+     * @param parallelism   并行度
+     * @param threshold     并行转换的数量阈值
+     * @param chunkSize     每个任务转换的数量
+     * @param geometryCache 已解码几何对象的缓存，可为null
+     */
+    public ParallelGeometryConverter(int parallelism, int threshold, int chunkSize, GeometryCache geometryCache) {
+        this.pool = new ForkJoinPool(parallelism);
+        this.threshold = threshold;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.geometryCache = geometryCache;
+    }
+
+    /**
+     * 开始收集当前线程的延迟转换
+     *
+     * @return 外层的收集对象，用于{@link #end(Batch)}恢复
+     */
+    public Batch begin() {
+        Batch previous = batchHolder.get();
+        batchHolder.set(new Batch());
+        return previous;
+    }
+
+    /**
+     * 暂停当前线程的收集，之后的几何值立即转换
+     * 用于通过ResultHandler逐行处理的查询，每一行交给ResultHandler时几何对象必须已经可用
+     *
+     * @return 外层的收集对象，用于{@link #end(Batch)}恢复
+     */
+    public Batch suspend() {
+        Batch previous = batchHolder.get();
+        batchHolder.remove();
+        return previous;
+    }
+
+    /**
+     * 当前线程是否处于收集状态
+     *
+     * @return boolean
+     */
+    public boolean isDeferring() {
+        return null != batchHolder.get();
+    }
+
+    /**
+     * 延迟转换几何值
+     *
+     * @param value PostGIS geometry的文本值(hex EWKB)
+     * @return 尚未填充坐标的几何对象，{@link #complete()}后可用
+     * @throws SQLException SQLException
+     */
+    public Geometry defer(String value) throws SQLException {
+        if (null == value) {
+            return null;
+        }
+        Batch batch = batchHolder.get();
+        if (null == batch) {
+            return decode(value);
+        }
+        Geometry placeholder = placeholder(value);
+        batch.placeholders.add(placeholder);
+        batch.values.add(value);
+        return placeholder;
+    }
+
+    /**
+     * 转换并回填当前线程收集的几何对象
+     *
+     * @throws SQLException SQLException
+     */
+    public void complete() throws SQLException {
+        Batch batch = batchHolder.get();
+        if (null == batch) {
+            return;
+        }
+        int size = batch.values.size();
+        if (size < threshold) {
+            convertRange(batch, 0, size);
+            return;
+        }
+        List<ForkJoinTask<Void>> tasks = new ArrayList<>(size / chunkSize + 1);
+        for (int from = 0; from < size; from += chunkSize) {
+            int start = from;
+            int end = Math.min(size, from + chunkSize);
+            tasks.add(pool.submit((Callable<Void>) () -> {
+                convertRange(batch, start, end);
+                return null;
+            }));
+        }
+        for (ForkJoinTask<Void> task : tasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof SQLException) {
+                    throw (SQLException) e.getCause();
+                }
+                throw new SQLException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * 结束当前线程的收集
+     *
+     * @param previous {@link #begin()}或{@link #suspend()}的返回值
+     */
+    public void end(Batch previous) {
+        if (null == previous) {
+            batchHolder.remove();
+        } else {
+            batchHolder.set(previous);
+        }
+    }
+
+    /**
+     * 关闭转换线程池
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private void convertRange(Batch batch, int from, int to) throws SQLException {
+        for (int i = from; i < to; i++) {
+            fill(batch.placeholders.get(i), decode(batch.values.get(i)));
+        }
+    }
+
+    private Geometry decode(String value) throws SQLException {
+        if (null != geometryCache) {
+            return geometryCache.get(value);
+        }
+        return GeometryUtils.convertEWKB2GGeometry(value);
+    }
+
+    @SuppressWarnings("unchecked")
+    static void fill(Geometry target, Geometry source) throws SQLException {
+        if (target instanceof Point && source instanceof Point) {
+            ((Point) target).setCoordinates(((Point) source).getCoordinates());
+            return;
+        }
+        mil.nga.sf.Geometry t = target.getGeometry();
+        mil.nga.sf.Geometry s = null == source ? null : source.getGeometry();
+        if (t instanceof mil.nga.sf.Polygon && s instanceof mil.nga.sf.Polygon) {
+            ((mil.nga.sf.Polygon) t).setRings(((mil.nga.sf.Polygon) s).getRings());
+        } else if (t instanceof mil.nga.sf.LineString && s instanceof mil.nga.sf.LineString) {
+            ((mil.nga.sf.LineString) t).setPoints(((mil.nga.sf.LineString) s).getPoints());
+        } else if (t instanceof mil.nga.sf.GeometryCollection && s instanceof mil.nga.sf.GeometryCollection) {
+            ((mil.nga.sf.GeometryCollection<mil.nga.sf.Geometry>) t)
+                    .setGeometries(((mil.nga.sf.GeometryCollection<mil.nga.sf.Geometry>) s).getGeometries());
+        } else {
+            throw new SQLException("Geometry type mismatch: " + target.getType() + " <- "
+                    + (null == source ? null : source.getType()));
+        }
+    }
+
+    /**
+     * 根据EWKB头部的类型生成空几何对象
+     */
+    static Geometry placeholder(String value) throws SQLException {
+        if (value.length() < 10) {
+            throw new SQLException("Invalid EWKB value: " + value);
+        }
+        boolean littleEndian = "01".equals(value.substring(0, 2));
+        int type = 0;
+        try {
+            for (int i = 0; i < 4; i++) {
+                int b = Integer.parseInt(value.substring(2 + i * 2, 4 + i * 2), 16);
+                type |= littleEndian ? b << (8 * i) : b << (8 * (3 - i));
+            }
+        } catch (NumberFormatException e) {
+            throw new SQLException("Invalid EWKB value: " + value, e);
+        }
+        boolean hasZ = (type & Z_FLAG) != 0;
+        boolean hasM = (type & M_FLAG) != 0;
+        switch ((type & 0x0FFFFFFF) % 1000) {
+            case 1:
+                return new Point();
+            case 2:
+                return new LineString(new mil.nga.sf.LineString(hasZ, hasM));
+            case 3:
+                return new Polygon(new mil.nga.sf.Polygon(hasZ, hasM));
+            case 4:
+                return new MultiPoint(new mil.nga.sf.MultiPoint(hasZ, hasM));
+            case 5:
+                return new MultiLineString(new mil.nga.sf.MultiLineString(hasZ, hasM));
+            case 6:
+                return new MultiPolygon(new mil.nga.sf.MultiPolygon(hasZ, hasM));
+            case 7:
+                return new GeometryCollection(new mil.nga.sf.GeometryCollection<>(hasZ, hasM));
+            default:
+                throw new SQLException("Unsupported EWKB geometry type: " + type);
+        }
+    }
+
+    /**
+     * 一次结果集映射中待转换的几何对象
+     */
+    public static final class Batch {
+
+        private final List<Geometry> placeholders = new ArrayList<>();
+
+        private final List<String> values = new ArrayList<>();
+
+        private Batch() {
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package alanna.salamander.data.tile;
+
+import alanna.salamander.data.redis.ops.RedisOperation;
+import alanna.salamander.data.redis.ops.Type;
+import mil.nga.sf.GeometryEnvelope;
+import mil.nga.sf.geojson.FeatureConverter;
+import mil.nga.sf.geojson.Geometry;
+import mil.nga.sf.util.GeometryEnvelopeBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 经纬度范围(bbox)查询的缓存
+ * <p>
+ * 查询范围按固定缩放级别吸附到瓦片网格({@link TileKey})，每个瓦片缓存与其相交的要素id列表，
+ * 要素的GeoJSON编码及外包框缓存在图层的hash中，均写入Redis。
+ * 任意范围的查询由已缓存的瓦片组装，只有缺失的瓦片才通过一次数据库查询补齐，
+ * 返回的要素与查询范围的外包框相交，与PostGIS的{@code &&}语义一致。
+ * <p>
+ * loader的参数为需要查询的EPSG:4326范围(minLon, minLat, maxLon, maxLat)，例如：
+ * <pre>
+ * SELECT id, geom FROM my_table
+ * WHERE geom &amp;&amp; ST_MakeEnvelope(#{array[0]}, #{array[1]}, #{array[2]}, #{array[3]}, 4326)
+ * </pre>
+ * 图层数据变化时调用{@link #invalidate(String)}递增版本号，旧版本的缓存随过期时间自然淘汰。
+ *
+ * @author alanna
+ * @since 0.1
+ */
+@SuppressWarnings({"unused", "UnusedReturnValue"})
+@ConditionalOnProperty(prefix = "salamander.data.spatial-cache", name = "power", havingValue = "on")
+@Component
+public class SpatialQueryCache {
+
+    private static final Type<List<String>> IDS_TYPE = new Type<List<String>>() {
+    };
+
+    private static final Type<CachedFeature> FEATURE_TYPE = new Type<CachedFeature>() {
+    };
+
+    private static final Type<Long> VERSION_TYPE = new Type<Long>() {
+    };
+
+    private final RedisOperation redisOperation;
+
+    /**
+     * 缓存key前缀
+     */
+    @Value("${salamander.data.spatial-cache.key-prefix:salamander:spatial}")
+    private String keyPrefix;
+
+    /**
+     * 缓存过期时长，单位秒
+     */
+    @Value("${salamander.data.spatial-cache.timeout:86400}")
+    private long timeout;
+
+    /**
+     * 网格的缩放级别，级别14的瓦片边长约2.4km(赤道)
+     */
+    @Value("${salamander.data.spatial-cache.zoom:14}")
+    private int zoom;
+
+    /**
+     * 单次查询覆盖的最大瓦片数，超过时直接查询数据库且不缓存
+     * 超出瓦片网格(纬度超过约±85.0511)的查询同样直接查询数据库
+     */
+    @Value("${salamander.data.spatial-cache.max-tiles:256}")
+    private int maxTiles;
+
+    @Autowired
+    public SpatialQueryCache(RedisOperation redisOperation) {
+        this.redisOperation = redisOperation;
+    }
+
+    /**
+     * 查询范围内的要素
+     *
+     * @param layer  图层名
+     * @param bbox   查询范围，顺序为minLon, minLat, maxLon, maxLat
+     * @param loader 要素查询方法，返回范围内要素的id和几何对象
+     * @return id和几何对象
+     */
+    public Map<String, Geometry> query(String layer, double[] bbox, Function<double[], Map<?, Geometry>> loader) {
+        Map<String, String> encoded = queryEncoded(layer, bbox, loader);
+        Map<String, Geometry> features = new LinkedHashMap<>(encoded.size() * 4 / 3 + 1);
+        encoded.forEach((id, geometry) -> features.put(id, FeatureConverter.toGeometry(geometry)));
+        return features;
+    }
+
+    /**
+     * 查询范围内的要素，几何对象为GeoJSON文本，可直接用于接口输出
+     *
+     * @param layer  图层名
+     * @param bbox   查询范围，顺序为minLon, minLat, maxLon, maxLat
+     * @param loader 要素查询方法，返回范围内要素的id和几何对象
+     * @return id和GeoJSON几何对象
+     */
+    public Map<String, String> queryEncoded(String layer, double[] bbox, Function<double[], Map<?, Geometry>> loader) {
+        // 超出瓦片网格(如极地)的范围无法由瓦片完整覆盖，与过大的范围一样直接查询
+        if (!TileKey.withinGrid(bbox[0], bbox[1], bbox[2], bbox[3])
+                || TileKey.coveringCount(zoom, bbox[0], bbox[1], bbox[2], bbox[3]) > maxTiles) {
+            Map<String, CachedFeature> features = encode(loader.apply(bbox));
+            return select(features.keySet(), features, bbox);
+        }
+        List<TileKey> tiles = TileKey.covering(zoom, bbox[0], bbox[1], bbox[2], bbox[3]);
+
+        String prefix = layerPrefix(layer);
+        List<String> tileKeys = new ArrayList<>(tiles.size());
+        for (TileKey tile : tiles) {
+            tileKeys.add(tileKey(prefix, tile));
+        }
+        List<List<String>> cachedIds = redisOperation.multiGetValue(tileKeys, IDS_TYPE);
+
+        Set<String> ids = new LinkedHashSet<>();
+        List<TileKey> missing = new ArrayList<>();
+        for (int i = 0; i < tiles.size(); i++) {
+            List<String> tileIds = cachedIds.get(i);
+            if (null == tileIds) {
+                missing.add(tiles.get(i));
+            } else {
+                ids.addAll(tileIds);
+            }
+        }
+
+        Map<String, CachedFeature> features = new HashMap<>();
+        if (!ids.isEmpty()) {
+            List<String> cachedIdList = new ArrayList<>(ids);
+            List<CachedFeature> cached = redisOperation.multiGetHashValue(featuresKey(prefix), cachedIdList, FEATURE_TYPE);
+            for (int i = 0; i < cachedIdList.size(); i++) {
+                if (null == cached.get(i)) {
+                    // 要素hash先于瓦片过期，全部重新加载
+                    missing = tiles;
+                    features.clear();
+                    break;
+                }
+                features.put(cachedIdList.get(i), cached.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            ids.addAll(load(prefix, missing, loader, features));
+        }
+        return select(ids, features, bbox);
+    }
+
+    /**
+     * 使图层的全部缓存失效
+     *
+     * @param layer 图层名
+     * @return 图层的新版本号
+     */
+    public long invalidate(String layer) {
+        return redisOperation.increment(versionKey(layer));
+    }
+
+    /**
+     * 以一次查询补齐缺失的瓦片并写入缓存
+     *
+     * @return 缺失瓦片中的要素id
+     */
+    private Set<String> load(String prefix, List<TileKey> missing, Function<double[], Map<?, Geometry>> loader,
+                             Map<String, CachedFeature> features) {
+        double[] envelope = missing.get(0).getLonLatEnvelope();
+        for (TileKey tile : missing) {
+            double[] tileEnvelope = tile.getLonLatEnvelope();
+            envelope[0] = Math.min(envelope[0], tileEnvelope[0]);
+            envelope[1] = Math.min(envelope[1], tileEnvelope[1]);
+            envelope[2] = Math.max(envelope[2], tileEnvelope[2]);
+            envelope[3] = Math.max(envelope[3], tileEnvelope[3]);
+        }
+        Map<String, CachedFeature> loaded = encode(loader.apply(envelope));
+
+        Map<TileKey, List<String>> tileIds = new LinkedHashMap<>();
+        Set<String> ids = new LinkedHashSet<>();
+        for (TileKey tile : missing) {
+            double[] tileEnvelope = tile.getLonLatEnvelope();
+            List<String> inTile = new ArrayList<>();
+            loaded.forEach((id, feature) -> {
+                if (intersects(feature.bbox, tileEnvelope)) {
+                    inTile.add(id);
+                }
+            });
+            tileIds.put(tile, inTile);
+            ids.addAll(inTile);
+        }
+
+        Map<String, CachedFeature> toCache = new HashMap<>(ids.size() * 4 / 3 + 1);
+        for (String id : ids) {
+            toCache.put(id, loaded.get(id));
+        }
+        // 先写要素再写瓦片，保证瓦片引用的要素存在
+        if (!toCache.isEmpty()) {
+            String featuresKey = featuresKey(prefix);
+            redisOperation.putAllHashValue(featuresKey, toCache);
+            redisOperation.expire(featuresKey, timeout, TimeUnit.SECONDS);
+        }
+        tileIds.forEach((tile, inTile) -> redisOperation.setValueFor(tileKey(prefix, tile)).timeout(timeout).set(inTile));
+        features.putAll(toCache);
+        return ids;
+    }
+
+    private static Map<String, CachedFeature> encode(Map<?, Geometry> loaded) {
+        if (null == loaded) {
+            return Collections.emptyMap();
+        }
+        Map<String, CachedFeature> features = new LinkedHashMap<>(loaded.size() * 4 / 3 + 1);
+        loaded.forEach((id, geometry) -> {
+            if (null == id || null == geometry) {
+                return;
+            }
+            GeometryEnvelope envelope = GeometryEnvelopeBuilder.buildEnvelope(geometry.getGeometry());
+            if (null == envelope) {
+                return;
+            }
+            CachedFeature feature = new CachedFeature();
+            feature.bbox = new double[]{envelope.getMinX(), envelope.getMinY(), envelope.getMaxX(), envelope.getMaxY()};
+            feature.geometry = FeatureConverter.toStringValue(geometry);
+            features.put(String.valueOf(id), feature);
+        });
+        return features;
+    }
+
+    private static Map<String, String> select(Set<String> ids, Map<String, CachedFeature> features, double[] bbox) {
+        Map<String, String> selected = new LinkedHashMap<>();
+        for (String id : ids) {
+            CachedFeature feature = features.get(id);
+            if (null != feature && intersects(feature.bbox, bbox)) {
+                selected.put(id, feature.geometry);
+            }
+        }
+        return selected;
+    }
+
+    private static boolean intersects(double[] a, double[] b) {
+        return a[0] <= b[2] && a[2] >= b[0] && a[1] <= b[3] && a[3] >= b[1];
+    }
+
+    private String layerPrefix(String layer) {
+        long version = Optional.ofNullable(redisOperation.getValueFor(VERSION_TYPE).get(versionKey(layer)))
+                .orElse(0L);
+        return keyPrefix + ":" + layer + ":v" + version;
+    }
+
+    private static String tileKey(String prefix, TileKey tile) {
+        return prefix + ":" + tile.getZ() + ":" + tile.getX() + ":" + tile.getY();
+    }
+
+    private static String featuresKey(String prefix) {
+        return prefix + ":features";
+    }
+
+    private String versionKey(String layer) {
+        return keyPrefix + ":" + layer + ":version";
+    }
+
+    /**
+     * 缓存的要素，bbox顺序为minX, minY, maxX, maxY
+     */
+    static class CachedFeature {
+
+        public double[] bbox;
+
+        public String geometry;
+    }
+}
@@ -0,0 +1,240 @@
+package alanna.salamander.data.tile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 瓦片坐标(z/x/y, XYZ方案)
+ * <p>
+ * 同时作为Mapper的查询参数，Mapper中可直接引用{@code #{z}}、{@code #{x}}、{@code #{y}}、
+ * {@code #{extent}}、{@code #{buffer}}，例如：
+ * <pre>
+ * WITH bounds AS (SELECT ST_TileEnvelope(#{z}, #{x}, #{y}) AS geom),
+ * mvt AS (
+ *     SELECT ST_AsMVTGeom(ST_Transform(t.geom, 3857), bounds.geom, #{extent}, #{buffer}, true) AS geom, t.id, t.name
+ *     FROM my_table t, bounds
+ *     WHERE t.geom &amp;&amp; ST_Transform(bounds.geom, 4326)
+ * )
+ * SELECT ST_AsMVT(mvt.*, 'my_layer') FROM mvt
+ * </pre>
+ * ST_AsMVTGeom负责按瓦片裁剪并吸附到瓦片网格(即简化)，ST_AsMVT负责编码。
+ *
+ * @author alanna
+ * @since 0.1
+ */
+@SuppressWarnings("unused")
+public final class TileKey {
+
+    /**
+     * 最大缩放级别
+     */
+    public static final int MAX_ZOOM = 30;
+
+    /**
+     * 默认瓦片坐标范围
+     */
+    public static final int DEFAULT_EXTENT = 4096;
+
+    /**
+     * 默认瓦片缓冲区，单位为瓦片坐标
+     */
+    public static final int DEFAULT_BUFFER = 64;
+
+    /**
+     * Web Mercator半周长
+     */
+    private static final double ORIGIN_SHIFT = 20037508.342789244;
+
+    /**
+     * Web Mercator的最大纬度
+     */
+    private static final double MAX_LATITUDE = 85.0511287798066;
+
+    private final int z;
+
+    private final int x;
+
+    private final int y;
+
+    private final int extent;
+
+    private final int buffer;
+
+    public TileKey(int z, int x, int y) {
+        this(z, x, y, DEFAULT_EXTENT, DEFAULT_BUFFER);
+    }
+
+    public TileKey(int z, int x, int y, int extent, int buffer) {
+        if (z < 0 || z > MAX_ZOOM) {
+            throw new IllegalArgumentException("Invalid tile zoom: " + z);
+        }
+        long size = 1L << z;
+        if (x < 0 || x >= size || y < 0 || y >= size) {
+            throw new IllegalArgumentException("Invalid tile coordinate: " + z + "/" + x + "/" + y);
+        }
+        if (extent <= 0 || buffer < 0) {
+            throw new IllegalArgumentException("Invalid tile extent or buffer: " + extent + ", " + buffer);
+        }
+        this.z = z;
+        this.x = x;
+        this.y = y;
+        this.extent = extent;
+        this.buffer = buffer;
+    }
+
+    public int getZ() {
+        return z;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getExtent() {
+        return extent;
+    }
+
+    public int getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * 瓦片在EPSG:3857下的范围，顺序为minX, minY, maxX, maxY
+     * 用于不支持ST_TileEnvelope(PostGIS 3.0以下)时以ST_MakeEnvelope构造范围
+     *
+     * @return envelope
+     */
+    public double[] getEnvelope() {
+        double tileSize = 2 * ORIGIN_SHIFT / (1L << z);
+        double minX = -ORIGIN_SHIFT + x * tileSize;
+        double maxY = ORIGIN_SHIFT - y * tileSize;
+        return new double[]{minX, maxY - tileSize, minX + tileSize, maxY};
+    }
+
+    /**
+     * 瓦片在EPSG:4326下的范围，顺序为minLon, minLat, maxLon, maxLat
+     *
+     * @return envelope
+     */
+    public double[] getLonLatEnvelope() {
+        long size = 1L << z;
+        return new double[]{longitude(x, size), latitude(y + 1, size), longitude(x + 1, size), latitude(y, size)};
+    }
+
+    /**
+     * 经纬度范围是否完全位于瓦片网格内
+     * 经度超出±180或纬度超出Web Mercator最大纬度(约±85.0511)的部分不被任何瓦片覆盖
+     *
+     * @param minLon 最小经度
+     * @param minLat 最小纬度
+     * @param maxLon 最大经度
+     * @param maxLat 最大纬度
+     * @return boolean
+     */
+    public static boolean withinGrid(double minLon, double minLat, double maxLon, double maxLat) {
+        return minLon >= -180 && maxLon <= 180 && minLat >= -MAX_LATITUDE && maxLat <= MAX_LATITUDE;
+    }
+
+    /**
+     * 覆盖经纬度范围的瓦片数量，用于在生成瓦片列表前判断范围是否过大
+     *
+     * @param z      缩放级别
+     * @param minLon 最小经度
+     * @param minLat 最小纬度
+     * @param maxLon 最大经度
+     * @param maxLat 最大纬度
+     * @return 瓦片数量
+     */
+    public static long coveringCount(int z, double minLon, double minLat, double maxLon, double maxLat) {
+        int[] range = coveringRange(z, minLon, minLat, maxLon, maxLat);
+        return (long) (range[2] - range[0] + 1) * (range[3] - range[1] + 1);
+    }
+
+    /**
+     * 覆盖经纬度范围的全部瓦片，超出瓦片网格的部分截断，
+     * 需要完整覆盖时应先通过{@link #withinGrid(double, double, double, double)}判断
+     * 范围较大时应先通过{@link #coveringCount(int, double, double, double, double)}判断数量
+     *
+     * @param z      缩放级别
+     * @param minLon 最小经度
+     * @param minLat 最小纬度
+     * @param maxLon 最大经度
+     * @param maxLat 最大纬度
+     * @return tiles, 按行优先排列
+     */
+    public static List<TileKey> covering(int z, double minLon, double minLat, double maxLon, double maxLat) {
+        int[] range = coveringRange(z, minLon, minLat, maxLon, maxLat);
+        long count = (long) (range[2] - range[0] + 1) * (range[3] - range[1] + 1);
+        if (count > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many tiles: " + count);
+        }
+        List<TileKey> tiles = new ArrayList<>((int) count);
+        for (int y = range[1]; y <= range[3]; y++) {
+            for (int x = range[0]; x <= range[2]; x++) {
+                tiles.add(new TileKey(z, x, y));
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * 覆盖经纬度范围的瓦片坐标范围，顺序为minX, minY, maxX, maxY
+     */
+    private static int[] coveringRange(int z, double minLon, double minLat, double maxLon, double maxLat) {
+        if (z < 0 || z > MAX_ZOOM) {
+            throw new IllegalArgumentException("Invalid tile zoom: " + z);
+        }
+        if (!(minLon <= maxLon && minLat <= maxLat)) {
+            throw new IllegalArgumentException("Invalid envelope: " + minLon + ", " + minLat + ", " + maxLon + ", " + maxLat);
+        }
+        long size = 1L << z;
+        return new int[]{tileX(minLon, size), tileY(maxLat, size), tileX(maxLon, size), tileY(minLat, size)};
+    }
+
+    private static int tileX(double lon, long size) {
+        long x = (long) Math.floor((lon + 180) / 360 * size);
+        return (int) Math.max(0, Math.min(size - 1, x));
+    }
+
+    private static int tileY(double lat, long size) {
+        double radians = Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, lat)));
+        long y = (long) Math.floor((1 - Math.log(Math.tan(radians) + 1 / Math.cos(radians)) / Math.PI) / 2 * size);
+        return (int) Math.max(0, Math.min(size - 1, y));
+    }
+
+    private static double longitude(long x, long size) {
+        return (double) x / size * 360 - 180;
+    }
+
+    private static double latitude(long y, long size) {
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2.0 * y / size))));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TileKey)) {
+            return false;
+        }
+        TileKey tileKey = (TileKey) o;
+        return z == tileKey.z && x == tileKey.x && y == tileKey.y
+                && extent == tileKey.extent && buffer == tileKey.buffer;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(z, x, y, extent, buffer);
+    }
+
+    @Override
+    public String toString() {
+        return z + "/" + x + "/" + y;
+    }
+}
@@ -0,0 +1,102 @@
+package alanna.salamander.data.tile;
+
+import alanna.salamander.data.redis.ops.RedisOperation;
+import alanna.salamander.data.redis.ops.Type;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Mapbox矢量瓦片(MVT)缓存
+ * <p>
+ * 瓦片由调用方的Mapper查询(ST_AsMVTGeom + ST_AsMVT)生成，参考{@link TileKey}。
+ * 编码后的瓦片以原始字节写入Redis，图层版本号为key的一部分，
+ * 图层数据变化时调用{@link #invalidate(String)}递增版本号，旧版本的瓦片随过期时间自然淘汰。
+ *
+ * @author alanna
+ * @since 0.1
+ */
+@SuppressWarnings({"unused", "UnusedReturnValue"})
+@ConditionalOnProperty(prefix = "salamander.data.vector-tile", name = "power", havingValue = "on")
+@Component
+public class VectorTileCache {
+
+    private static final Type<Long> VERSION_TYPE = new Type<Long>() {
+    };
+
+    private static final byte[] EMPTY_TILE = new byte[0];
+
+    private final RedisOperation redisOperation;
+
+    /**
+     * 瓦片key前缀
+     */
+    @Value("${salamander.data.vector-tile.key-prefix:salamander:tile}")
+    private String keyPrefix;
+
+    /**
+     * 瓦片过期时长，单位秒
+     */
+    @Value("${salamander.data.vector-tile.timeout:86400}")
+    private long timeout;
+
+    @Autowired
+    public VectorTileCache(RedisOperation redisOperation) {
+        this.redisOperation = redisOperation;
+    }
+
+    /**
+     * 获取瓦片，缓存未命中时通过loader生成并写入缓存
+     *
+     * @param layer  图层名
+     * @param tile   瓦片坐标
+     * @param loader 瓦片生成方法，一般为返回ST_AsMVT结果的Mapper方法
+     * @return MVT bytes, 瓦片内没有数据时为空数组
+     */
+    public byte[] getTile(String layer, TileKey tile, Function<TileKey, byte[]> loader) {
+        String key = tileKey(layer, tile);
+        byte[] cached = redisOperation.getBytes(key);
+        if (null != cached) {
+            return cached;
+        }
+        byte[] encoded = Optional.ofNullable(loader.apply(tile)).orElse(EMPTY_TILE);
+        redisOperation.setBytes(key, encoded, timeout, TimeUnit.SECONDS);
+        return encoded;
+    }
+
+    /**
+     * 使图层的全部瓦片失效
+     *
+     * @param layer 图层名
+     * @return 图层的新版本号
+     */
+    public long invalidate(String layer) {
+        return redisOperation.increment(versionKey(layer));
+    }
+
+    /**
+     * 删除单个瓦片
+     *
+     * @param layer 图层名
+     * @param tile  瓦片坐标
+     */
+    public void evict(String layer, TileKey tile) {
+        redisOperation.delete(tileKey(layer, tile));
+    }
+
+    private String tileKey(String layer, TileKey tile) {
+        long version = Optional.ofNullable(redisOperation.getValueFor(VERSION_TYPE).get(versionKey(layer)))
+                .orElse(0L);
+        return keyPrefix + ":" + layer + ":v" + version + ":" + tile.getZ() + ":" + tile.getX() + ":" + tile.getY()
+                + ":" + tile.getExtent() + ":" + tile.getBuffer();
+    }
+
+    private String versionKey(String layer) {
+        return keyPrefix + ":" + layer + ":version";
+    }
+}
@@ -0,0 +1,58 @@
+package alanna.salamander.data.tape;
+
+import alanna.salamander.data.tape.util.GeometryUtils;
+import mil.nga.sf.geojson.FeatureConverter;
+import mil.nga.sf.geojson.Geometry;
+import org.junit.Assert;
+import org.junit.Test;
+import org.postgis.binary.BinaryParser;
+
+import java.sql.SQLException;
+
+/**
+ * test for geometry utils
+ *
+ * @author alanna
+ * @since 0.1
+ */
+public class GeometryUtilsTest {
+
+    @Test
+    public void testPointToEWKB() throws SQLException {
+        Assert.assertEquals("SRID=4326;POINT(1.5 2.5)",
+                ewkbToString("{\"type\":\"Point\",\"coordinates\":[1.5,2.5]}", 4326));
+    }
+
+    @Test
+    public void testPolygonWithHoleToEWKB() throws SQLException {
+        Assert.assertEquals("POLYGON((0 0,1 0,1 1,0 0),(0.1 0.1,0.2 0.1,0.2 0.2,0.1 0.1))",
+                ewkbToString("{\"type\":\"Polygon\",\"coordinates\":"
+                        + "[[[0,0],[1,0],[1,1],[0,0]],[[0.1,0.1],[0.2,0.1],[0.2,0.2],[0.1,0.1]]]}", 0));
+    }
+
+    @Test
+    public void testMultiPolygonZToEWKB() throws SQLException {
+        Assert.assertEquals("SRID=4326;MULTIPOLYGON(((0 0 5,1 0 5,1 1 5,0 0 5)))",
+                ewkbToString("{\"type\":\"MultiPolygon\",\"coordinates\":"
+                        + "[[[[0,0,5],[1,0,5],[1,1,5],[0,0,5]]]]}", 4326));
+    }
+
+    @Test
+    public void testGeometryCollectionToEWKB() throws SQLException {
+        Assert.assertEquals("SRID=3857;GEOMETRYCOLLECTION(POINT(1 2),LINESTRING(1 2,3 4))",
+                ewkbToString("{\"type\":\"GeometryCollection\",\"geometries\":["
+                        + "{\"type\":\"Point\",\"coordinates\":[1,2]},"
+                        + "{\"type\":\"LineString\",\"coordinates\":[[1,2],[3,4]]}]}", 3857));
+    }
+
+    @Test
+    public void testNullToEWKB() throws SQLException {
+        Assert.assertNull(GeometryUtils.convert2EWKB(null, 4326));
+    }
+
+    private String ewkbToString(String geoJson, int srid) throws SQLException {
+        Geometry geometry = (Geometry) FeatureConverter.toGeometry(geoJson);
+        byte[] ewkb = GeometryUtils.convert2EWKB(geometry, srid);
+        return new BinaryParser().parse(ewkb).toString();
+    }
+}
@@ -0,0 +1,130 @@
+package alanna.salamander.data.tape;
+
+import alanna.salamander.data.tape.entity.BaseSequenceIdEntity;
+import alanna.salamander.data.tape.id.SequenceBlockIdGenerator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * test for sequence block id generator
+ *
+ * @author alanna
+ * @since 0.1
+ */
+public class SequenceBlockIdGeneratorTest {
+
+    private static final long BLOCK_SIZE = 100;
+
+    /**
+     * 模拟 INCREMENT BY 100 的序列
+     */
+    private final AtomicLong sequence = new AtomicLong(1 - BLOCK_SIZE);
+
+    /**
+     * nextval调用次数
+     */
+    private final AtomicInteger nextvalCalls = new AtomicInteger();
+
+    private final SequenceBlockIdGenerator generator =
+            new SequenceBlockIdGenerator(sequenceDataSource(BLOCK_SIZE), "test_seq", BLOCK_SIZE);
+
+    private final TestEntity entity = new TestEntity();
+
+    @Test
+    public void testSequentialIds() {
+        for (long expected = 1; expected <= 250; expected++) {
+            Assert.assertEquals(expected, generator.nextId());
+        }
+        Assert.assertEquals(3, nextvalCalls.get());
+    }
+
+    @Test
+    public void testConcurrentIdsAreUnique() throws InterruptedException {
+        int threads = 8;
+        int idsPerThread = 10_000;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < idsPerThread; i++) {
+                    ids.add(generator.nextId(entity).longValue());
+                }
+            });
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        Assert.assertEquals(threads * idsPerThread, ids.size());
+        Assert.assertEquals(threads * idsPerThread / BLOCK_SIZE, nextvalCalls.get());
+    }
+
+    @Test
+    public void testIncrementMismatchFails() {
+        SequenceBlockIdGenerator misconfigured = new SequenceBlockIdGenerator(sequenceDataSource(1), "test_seq", BLOCK_SIZE);
+        try {
+            misconfigured.nextId();
+            Assert.fail("sequence increment mismatch should fail");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().contains("INCREMENT BY " + BLOCK_SIZE));
+        }
+        Assert.assertEquals(0, nextvalCalls.get());
+    }
+
+    @Test
+    public void testOtherEntitiesUseDefaultGenerator() {
+        long snowflake = generator.nextId(new Object()).longValue();
+        Assert.assertTrue(snowflake > BLOCK_SIZE);
+        Assert.assertEquals(0, nextvalCalls.get());
+        Assert.assertEquals(1L, generator.nextId(entity).longValue());
+    }
+
+    /**
+     * 模拟序列，increment为pg_sequence中的步长
+     */
+    private DataSource sequenceDataSource(long increment) {
+        Connection connection = proxy(Connection.class, (proxy, method, args) -> {
+            if (!"prepareStatement".equals(method.getName())) {
+                return null;
+            }
+            boolean nextval = ((String) args[0]).contains("nextval");
+            ResultSet resultSet = proxy(ResultSet.class, (rsProxy, rsMethod, rsArgs) -> {
+                switch (rsMethod.getName()) {
+                    case "next":
+                        return true;
+                    case "getLong":
+                        if (!nextval) {
+                            return increment;
+                        }
+                        nextvalCalls.incrementAndGet();
+                        return sequence.addAndGet(BLOCK_SIZE);
+                    default:
+                        return null;
+                }
+            });
+            return proxy(PreparedStatement.class,
+                    (psProxy, psMethod, psArgs) -> "executeQuery".equals(psMethod.getName()) ? resultSet : null);
+        });
+        return proxy(DataSource.class,
+                (proxy, method, args) -> "getConnection".equals(method.getName()) ? connection : null);
+    }
+
+    private static class TestEntity extends BaseSequenceIdEntity<Long> {
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, java.lang.reflect.InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
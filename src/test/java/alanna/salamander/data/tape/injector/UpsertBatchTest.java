@@ -0,0 +1,214 @@
+package alanna.salamander.data.tape.injector;
+
+import alanna.salamander.data.tape.entity.BaseAutoIdEntity;
+import alanna.salamander.data.tape.mapper.UpsertMapper;
+import com.baomidou.mybatisplus.annotation.FieldStrategy;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * test for upsert batch
+ *
+ * @author alanna
+ * @since 0.1
+ */
+public class UpsertBatchTest {
+
+    private MappedStatement ms;
+
+    /**
+     * mapper.upsertBatch收到的参数
+     */
+    private final List<Map<String, Object>> calls = new ArrayList<>();
+
+    private final ItemMapper mapper = (ItemMapper) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[]{ItemMapper.class}, (proxy, method, args) -> {
+                if (method.isDefault()) {
+                    return InvocationHandler.invokeDefault(proxy, method, args);
+                }
+                Map<String, Object> parameter = new HashMap<>();
+                parameter.put("list", new ArrayList<>((Collection<?>) args[0]));
+                parameter.put("conflict", args[1]);
+                parameter.put("fields", args[2]);
+                parameter.put("updates", args[3]);
+                calls.add(parameter);
+                return ((Collection<?>) args[0]).size();
+            });
+
+    @Before
+    public void setUp() {
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        MapperBuilderAssistant assistant = new MapperBuilderAssistant(configuration, "");
+        assistant.setCurrentNamespace(ItemMapper.class.getName());
+        TableInfo tableInfo = TableInfoHelper.initTableInfo(assistant, Item.class);
+        new UpsertBatch().inject(assistant, ItemMapper.class, Item.class, tableInfo);
+        ms = configuration.getMappedStatement(ItemMapper.class.getName() + "." + UpsertBatch.METHOD_NAME);
+    }
+
+    @Test
+    public void testDoUpdateSql() {
+        BoundSql boundSql = boundSql(List.of(item("a", "A", "x"), item("b", "B", "y")), "code",
+                Set.of("code", "name", "note"), Set.of("code", "name"));
+
+        Assert.assertEquals("INSERT INTO item (code,name,note,create_time,update_time)"
+                + " VALUES (?,?,?,now(),now()) , (?,?,?,now(),now())"
+                + " ON CONFLICT (code) DO UPDATE SET code = EXCLUDED.code,name = EXCLUDED.name,update_time = now()",
+                normalize(boundSql.getSql()));
+        Assert.assertEquals(List.of("et.code", "et.name", "et.note"), boundProperties(boundSql).subList(0, 3));
+        Assert.assertEquals(6, boundSql.getParameterMappings().size());
+    }
+
+    @Test
+    public void testDoNothingSql() {
+        BoundSql boundSql = boundSql(List.of(item("a", null, null)), "code", Set.of("code"), Set.of());
+
+        Assert.assertEquals("INSERT INTO item (code,create_time,update_time) VALUES (?,now(),now())"
+                + " ON CONFLICT (code) DO NOTHING", normalize(boundSql.getSql()));
+    }
+
+    @Test
+    public void testUpsertGroupsRowsByWrittenColumns() {
+        int affected = mapper.upsert(List.of(item("a", "A", "x"), item("b", null, "y"), item("c", "C", "z")), "code");
+
+        Assert.assertEquals(3, affected);
+        Assert.assertEquals(2, calls.size());
+        Assert.assertEquals(Set.of("code", "name", "note"), calls.get(0).get("fields"));
+        // note的更新策略为NEVER
+        Assert.assertEquals(Set.of("code", "name"), calls.get(0).get("updates"));
+        Assert.assertEquals(2, ((List<?>) calls.get(0).get("list")).size());
+        Assert.assertEquals(Set.of("code", "note"), calls.get(1).get("fields"));
+        Assert.assertEquals(1, ((List<?>) calls.get(1).get("list")).size());
+    }
+
+    @Test
+    public void testConflictColumnIsAlwaysWritten() {
+        // tag的插入策略为NEVER，作为冲突列时仍然写入
+        Item item = item("a", null, null);
+        item.setTag("t");
+        mapper.upsert(List.of(item), "code", "tag");
+
+        Assert.assertEquals(1, calls.size());
+        Assert.assertEquals(Set.of("code", "tag"), calls.get(0).get("fields"));
+        Assert.assertTrue(normalize(ms.getBoundSql(calls.get(0)).getSql())
+                .startsWith("INSERT INTO item (code,tag,create_time,update_time)"));
+    }
+
+    @Test
+    public void testNullConflictValueRejected() {
+        try {
+            mapper.upsert(List.of(item("a", "A", null), item(null, "B", null)), "code");
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("code"));
+        }
+        Assert.assertTrue(calls.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testKeyColumnRejected() {
+        mapper.upsert(List.of(item("a", "A", null)), "id");
+    }
+
+    private BoundSql boundSql(List<Item> list, String conflict, Set<String> fields, Set<String> updates) {
+        Map<String, Object> parameter = new HashMap<>();
+        parameter.put("list", list);
+        parameter.put("conflict", conflict);
+        parameter.put("fields", fields);
+        parameter.put("updates", updates);
+        return ms.getBoundSql(parameter);
+    }
+
+    private static List<String> boundProperties(BoundSql boundSql) {
+        return boundSql.getParameterMappings().stream()
+                .map(ParameterMapping::getProperty)
+                .map(property -> property.replaceAll("__frch_et_\\d+", "et"))
+                .collect(Collectors.toList());
+    }
+
+    private static String normalize(String sql) {
+        return sql.replaceAll("\\s+", " ").replace("( ", "(").replace(" )", ")").trim();
+    }
+
+    private static Item item(String code, String name, String note) {
+        Item item = new Item();
+        item.setCode(code);
+        item.setName(name);
+        item.setNote(note);
+        return item;
+    }
+
+    public interface ItemMapper extends UpsertMapper<Item> {
+    }
+
+    @TableName("item")
+    public static class Item extends BaseAutoIdEntity<Long> {
+
+        private String code;
+
+        private String name;
+
+        /**
+         * 只在插入时写入
+         */
+        @TableField(updateStrategy = FieldStrategy.NEVER)
+        private String note;
+
+        /**
+         * 插入策略为NEVER
+         */
+        @TableField(insertStrategy = FieldStrategy.NEVER)
+        private String tag;
+
+        public String getCode() {
+            return code;
+        }
+
+        public void setCode(String code) {
+            this.code = code;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getNote() {
+            return note;
+        }
+
+        public void setNote(String note) {
+            this.note = note;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+
+        public void setTag(String tag) {
+            this.tag = tag;
+        }
+    }
+}
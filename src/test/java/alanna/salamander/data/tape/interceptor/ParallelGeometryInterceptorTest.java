@@ -0,0 +1,97 @@
+package alanna.salamander.data.tape.interceptor;
+
+import alanna.salamander.data.tape.util.ParallelGeometryConverter;
+import mil.nga.sf.geojson.Geometry;
+import mil.nga.sf.geojson.Point;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.postgis.PGgeometry;
+import org.postgis.binary.BinaryWriter;
+
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * test for parallel geometry interceptor
+ *
+ * @author alanna
+ * @since 0.1
+ */
+public class ParallelGeometryInterceptorTest {
+
+    private final ParallelGeometryConverter converter = new ParallelGeometryConverter(2, 2, 1, null);
+
+    private final Configuration configuration = new Configuration();
+
+    private final MappedStatement ms = new MappedStatement.Builder(configuration, "test.selectPoints",
+            new StaticSqlSource(configuration, "SELECT geom FROM point"), SqlCommandType.SELECT).build();
+
+    /**
+     * 模拟结果集中的几何值
+     */
+    private final List<String> values = new ArrayList<>();
+
+    private final AtomicInteger clearLocalCacheCalls = new AtomicInteger();
+
+    private final Executor executor = (Executor) new ParallelGeometryInterceptor(converter).plugin(
+            Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Executor.class},
+                    (proxy, method, args) -> {
+                        if ("clearLocalCache".equals(method.getName())) {
+                            clearLocalCacheCalls.incrementAndGet();
+                            return null;
+                        }
+                        List<Geometry> rows = new ArrayList<>();
+                        for (String value : values) {
+                            rows.add(converter.defer(value));
+                        }
+                        return rows;
+                    }));
+
+    @After
+    public void tearDown() {
+        converter.shutdown();
+    }
+
+    @Test
+    public void testQueryReturnsFilledGeometries() throws SQLException {
+        values.add(hex("POINT(1 2)"));
+        values.add(hex("POINT(3 4)"));
+        values.add(hex("POINT(5 6)"));
+
+        List<Object> rows = executor.query(ms, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+
+        Assert.assertEquals(3, rows.size());
+        Assert.assertEquals(4.0, ((Point) rows.get(1)).getCoordinates().getY(), 0);
+        Assert.assertFalse(converter.isDeferring());
+        Assert.assertEquals(0, clearLocalCacheCalls.get());
+    }
+
+    @Test
+    public void testFailedConversionClearsLocalCache() throws SQLException {
+        values.add(hex("POINT(1 2)"));
+        // 头部为合法的POLYGON，坐标被截断
+        values.add("0103000000ffffff");
+
+        try {
+            executor.query(ms, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+            Assert.fail();
+        } catch (SQLException e) {
+            Assert.assertEquals(1, clearLocalCacheCalls.get());
+        }
+        Assert.assertFalse(converter.isDeferring());
+    }
+
+    private static String hex(String wkt) throws SQLException {
+        return new BinaryWriter().writeHexed(PGgeometry.geomFromString(wkt));
+    }
+}
@@ -0,0 +1,194 @@
+package alanna.salamander.data.tape.interceptor;
+
+import alanna.salamander.data.tape.util.ParallelGeometryConverter;
+import mil.nga.sf.geojson.Geometry;
+import mil.nga.sf.geojson.Polygon;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.InterceptorChain;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.postgis.PGgeometry;
+import org.postgis.binary.BinaryWriter;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * test for query coalescing interceptor
+ *
+ * @author alanna
+ * @since 0.1
+ */
+public class QueryCoalescingInterceptorTest {
+
+    private final ParallelGeometryConverter converter = new ParallelGeometryConverter(1, 1000, 100, null);
+
+    private final Configuration configuration = new Configuration();
+
+    private final MappedStatement ms = new MappedStatement.Builder(configuration, "test.selectRegions",
+            new StaticSqlSource(configuration, "SELECT id, geom FROM region"), SqlCommandType.SELECT)
+            .resultMaps(Collections.singletonList(
+                    new ResultMap.Builder(configuration, "test.regionMap", Map.class, new ArrayList<>()).build()))
+            .build();
+
+    /**
+     * 数据库执行次数
+     */
+    private final AtomicInteger executions = new AtomicInteger();
+
+    /**
+     * 为true时模拟的查询阻塞到release
+     */
+    private volatile boolean blocking;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final ExecutorService threads = Executors.newFixedThreadPool(2);
+
+    @After
+    public void tearDown() {
+        threads.shutdownNow();
+        converter.shutdown();
+    }
+
+    @Test
+    public void testCoalescingIsOutermost() {
+        // 组件扫描时QueryCoalescingInterceptor先于ParallelGeometryInterceptor注册
+        List<Interceptor> interceptors = new ArrayList<>();
+        interceptors.add(new QueryCoalescingInterceptor(30000));
+        interceptors.add(new ParallelGeometryInterceptor(converter));
+        AnnotationAwareOrderComparator.sort(interceptors);
+
+        Assert.assertTrue(interceptors.get(0) instanceof ParallelGeometryInterceptor);
+        Assert.assertTrue(interceptors.get(1) instanceof QueryCoalescingInterceptor);
+    }
+
+    @Test
+    public void testFollowersReceiveFilledGeometries() throws Exception {
+        Executor executor = pluginExecutor();
+
+        // 第一次执行试探序列化，之后的执行允许合并
+        assertFilled(query(executor));
+        Assert.assertEquals(1, executions.get());
+
+        blocking = true;
+        Future<List<?>> leader = threads.submit(() -> query(executor));
+        while (executions.get() < 2) {
+            Thread.sleep(1);
+        }
+        Future<List<?>> follower = threads.submit(() -> query(executor));
+        waitForFollower();
+        release.countDown();
+
+        assertFilled(leader.get(10, TimeUnit.SECONDS));
+        assertFilled(follower.get(10, TimeUnit.SECONDS));
+        Assert.assertEquals(2, executions.get());
+    }
+
+    /**
+     * 按Spring注入的顺序加入拦截器链
+     */
+    private Executor pluginExecutor() {
+        List<Interceptor> interceptors = new ArrayList<>();
+        interceptors.add(new QueryCoalescingInterceptor(30000));
+        interceptors.add(new ParallelGeometryInterceptor(converter));
+        AnnotationAwareOrderComparator.sort(interceptors);
+        InterceptorChain chain = new InterceptorChain();
+        interceptors.forEach(chain::addInterceptor);
+        return (Executor) chain.pluginAll(databaseExecutor());
+    }
+
+    /**
+     * 模拟执行查询的Executor，结果集映射期间通过converter读取几何值
+     */
+    private Executor databaseExecutor() {
+        return (Executor) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Executor.class},
+                (proxy, method, args) -> {
+                    if (!"query".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    executions.incrementAndGet();
+                    if (blocking) {
+                        release.await();
+                    }
+                    List<Map<String, Object>> rows = new ArrayList<>();
+                    for (int i = 0; i < 3; i++) {
+                        Map<String, Object> row = new HashMap<>();
+                        row.put("id", i);
+                        row.put("geom", converter.defer(hex("POLYGON((0 0," + (i + 1) + " 0," + (i + 1) + " 1,0 0))")));
+                        rows.add(row);
+                    }
+                    return rows;
+                });
+    }
+
+    private List<?> query(Executor executor) throws SQLException {
+        CacheKey cacheKey = new CacheKey();
+        cacheKey.update(ms.getId());
+        BoundSql boundSql = ms.getBoundSql(null);
+        return executor.query(ms, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER, cacheKey, boundSql);
+    }
+
+    /**
+     * 等待者在InFlight上限时等待，先到的调用在release上无限期等待
+     */
+    private void waitForFollower() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread.getState() == Thread.State.TIMED_WAITING && waitingIn(thread, "await")) {
+                    return;
+                }
+            }
+            Thread.sleep(1);
+        }
+        Assert.fail("follower did not wait for the leader");
+    }
+
+    private static boolean waitingIn(Thread thread, String method) {
+        for (StackTraceElement element : thread.getStackTrace()) {
+            if (element.getClassName().endsWith("QueryCoalescingInterceptor$InFlight")
+                    && method.equals(element.getMethodName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void assertFilled(List<?> rows) {
+        Assert.assertEquals(3, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            Geometry geometry = (Geometry) ((Map<String, Object>) rows.get(i)).get("geom");
+            Assert.assertTrue(geometry instanceof Polygon);
+            Assert.assertFalse(geometry.getGeometry().isEmpty());
+            Assert.assertEquals(i + 1.0, ((Polygon) geometry).getCoordinates().get(0).get(1).getX(), 0);
+        }
+    }
+
+    private static String hex(String wkt) throws SQLException {
+        return new BinaryWriter().writeHexed(PGgeometry.geomFromString(wkt));
+    }
+}
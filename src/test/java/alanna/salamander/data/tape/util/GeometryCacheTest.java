@@ -0,0 +1,105 @@
+package alanna.salamander.data.tape.util;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import mil.nga.sf.geojson.Geometry;
+import mil.nga.sf.geojson.Polygon;
+import org.junit.Assert;
+import org.junit.Test;
+import org.postgis.PGgeometry;
+import org.postgis.binary.BinaryWriter;
+
+import java.sql.SQLException;
+
+/**
+ * test for geometry cache
+ *
+ * @author alanna
+ * @since 0.1
+ */
+public class GeometryCacheTest {
+
+    /**
+     * 同步淘汰，便于断言
+     */
+    private final GeometryCache cache = new GeometryCache(25, 5, Runnable::run);
+
+    @Test
+    public void testSmallValuesBypassCache() throws SQLException {
+        String point = hex("POINT(1 2)");
+        Assert.assertNotNull(cache.get(point));
+        Assert.assertNotNull(cache.get(point));
+
+        CacheStats stats = cache.stats();
+        Assert.assertEquals(0, stats.requestCount());
+        Assert.assertEquals(0, cache.weightedSize());
+    }
+
+    @Test
+    public void testHitAndMissStats() throws SQLException {
+        String polygon = polygon(0, 10);
+        cache.get(polygon);
+        cache.get(polygon);
+        cache.get(polygon);
+
+        CacheStats stats = cache.stats();
+        Assert.assertEquals(1, stats.missCount());
+        Assert.assertEquals(2, stats.hitCount());
+        Assert.assertEquals(10, cache.weightedSize());
+    }
+
+    @Test
+    public void testEvictionByVertices() throws SQLException {
+        cache.get(polygon(0, 10));
+        cache.get(polygon(1, 10));
+        Assert.assertEquals(20, cache.weightedSize());
+
+        cache.get(polygon(2, 10));
+        Assert.assertTrue(cache.weightedSize() <= 25);
+        Assert.assertTrue(cache.stats().evictionCount() >= 1);
+        Assert.assertTrue(cache.stats().evictionWeight() >= 10);
+    }
+
+    @Test
+    public void testReturnedCopiesAreIsolated() throws SQLException {
+        String value = polygon(0, 10);
+        Polygon missed = (Polygon) cache.get(value);
+        Polygon hit = (Polygon) cache.get(value);
+        Assert.assertNotSame(missed, hit);
+        Assert.assertNotSame(missed.getGeometry(), hit.getGeometry());
+
+        for (Polygon returned : new Polygon[]{missed, hit}) {
+            mil.nga.sf.Polygon mutated = (mil.nga.sf.Polygon) returned.getGeometry();
+            mutated.getExteriorRing().getPoints().get(0).setX(100.0);
+            mutated.getRings().clear();
+        }
+
+        Polygon polygon = (Polygon) cache.get(value);
+        Assert.assertEquals(1, polygon.getCoordinates().size());
+        Assert.assertEquals(1.0, polygon.getCoordinates().get(0).get(0).getX(), 0);
+        Assert.assertEquals(10, polygon.getCoordinates().get(0).size());
+    }
+
+    @Test
+    public void testNullValue() throws SQLException {
+        Geometry geometry = cache.get(null);
+        Assert.assertNull(geometry);
+        Assert.assertEquals(0, cache.stats().requestCount());
+    }
+
+    /**
+     * vertices个顶点的多边形，offset不同时EWKB不同
+     */
+    private static String polygon(int offset, int vertices) throws SQLException {
+        StringBuilder wkt = new StringBuilder("POLYGON((");
+        for (int i = 0; i < vertices - 1; i++) {
+            double angle = 2 * Math.PI * i / (vertices - 1);
+            wkt.append(offset + Math.cos(angle)).append(' ').append(Math.sin(angle)).append(',');
+        }
+        wkt.append(offset + 1.0).append(" 0))");
+        return hex(wkt.toString());
+    }
+
+    private static String hex(String wkt) throws SQLException {
+        return new BinaryWriter().writeHexed(PGgeometry.geomFromString(wkt));
+    }
+}
@@ -0,0 +1,181 @@
+package alanna.salamander.data.tape.util;
+
+import mil.nga.sf.geojson.FeatureConverter;
+import mil.nga.sf.geojson.Geometry;
+import mil.nga.sf.geojson.GeometryCollection;
+import mil.nga.sf.geojson.LineString;
+import mil.nga.sf.geojson.MultiLineString;
+import mil.nga.sf.geojson.MultiPoint;
+import mil.nga.sf.geojson.MultiPolygon;
+import mil.nga.sf.geojson.Point;
+import mil.nga.sf.geojson.Polygon;
+import mil.nga.sf.geojson.Position;
+import org.junit.Assert;
+import org.junit.Test;
+import org.postgis.PGgeometry;
+import org.postgis.binary.BinaryWriter;
+import org.postgis.binary.ValueSetter;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * test for parallel geometry converter
+ *
+ * @author alanna
+ * @since 0.1
+ */
+public class ParallelGeometryConverterTest {
+
+    @Test
+    public void testPlaceholderTypes() throws SQLException {
+        Assert.assertTrue(ParallelGeometryConverter.placeholder(hex("POINT(1 2)")) instanceof Point);
+        Assert.assertTrue(ParallelGeometryConverter.placeholder(hex("LINESTRING(0 0,1 1)")) instanceof LineString);
+        Assert.assertTrue(ParallelGeometryConverter.placeholder(hex("POLYGON((0 0,1 0,1 1,0 0))")) instanceof Polygon);
+        Assert.assertTrue(ParallelGeometryConverter.placeholder(hex("MULTIPOINT(0 0,1 1)")) instanceof MultiPoint);
+        Assert.assertTrue(ParallelGeometryConverter.placeholder(hex("MULTILINESTRING((0 0,1 1))")) instanceof MultiLineString);
+        Assert.assertTrue(ParallelGeometryConverter.placeholder(hex("MULTIPOLYGON(((0 0,1 0,1 1,0 0)))")) instanceof MultiPolygon);
+        Assert.assertTrue(ParallelGeometryConverter.placeholder(hex("GEOMETRYCOLLECTION(POINT(1 2))")) instanceof GeometryCollection);
+    }
+
+    @Test
+    public void testPlaceholderHeaderFlags() throws SQLException {
+        Geometry lineZ = ParallelGeometryConverter.placeholder(hex("SRID=4326;LINESTRING(0 0 1,1 1 1)"));
+        Assert.assertTrue(lineZ instanceof LineString);
+        Assert.assertTrue(lineZ.getGeometry().hasZ());
+        Assert.assertFalse(lineZ.getGeometry().hasM());
+
+        String bigEndian = new BinaryWriter().writeHexed(PGgeometry.geomFromString("SRID=4326;POLYGON((0 0,1 0,1 1,0 0))"),
+                ValueSetter.XDR.NUMBER);
+        Assert.assertTrue(bigEndian.startsWith("00"));
+        Assert.assertTrue(ParallelGeometryConverter.placeholder(bigEndian) instanceof Polygon);
+    }
+
+    @Test(expected = SQLException.class)
+    public void testPlaceholderTooShort() throws SQLException {
+        ParallelGeometryConverter.placeholder("0101");
+    }
+
+    @Test(expected = SQLException.class)
+    public void testPlaceholderNotHex() throws SQLException {
+        ParallelGeometryConverter.placeholder("01zz000000");
+    }
+
+    @Test(expected = SQLException.class)
+    public void testPlaceholderUnsupportedType() throws SQLException {
+        // CIRCULARSTRING
+        ParallelGeometryConverter.placeholder("0108000000");
+    }
+
+    @Test
+    public void testFill() throws SQLException {
+        String polygon = "{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[1,0],[1,1],[0,0]]]}";
+        Geometry target = ParallelGeometryConverter.placeholder(hex("POLYGON((0 0,1 0,1 1,0 0))"));
+        ParallelGeometryConverter.fill(target, FeatureConverter.toGeometry(polygon));
+        Assert.assertEquals(FeatureConverter.toStringValue(FeatureConverter.toGeometry(polygon)),
+                FeatureConverter.toStringValue(target));
+
+        Geometry point = ParallelGeometryConverter.placeholder(hex("POINT(1 2)"));
+        ParallelGeometryConverter.fill(point, FeatureConverter.toGeometry("{\"type\":\"Point\",\"coordinates\":[1,2]}"));
+        Assert.assertEquals(2.0, ((Point) point).getCoordinates().getY(), 0);
+
+        String multiPolygon = "{\"type\":\"MultiPolygon\",\"coordinates\":[[[[0,0],[1,0],[1,1],[0,0]]]]}";
+        Geometry collection = ParallelGeometryConverter.placeholder(hex("MULTIPOLYGON(((0 0,1 0,1 1,0 0)))"));
+        ParallelGeometryConverter.fill(collection, FeatureConverter.toGeometry(multiPolygon));
+        Assert.assertEquals(1, ((MultiPolygon) collection).getCoordinates().size());
+    }
+
+    @Test(expected = SQLException.class)
+    public void testFillTypeMismatch() throws SQLException {
+        Geometry target = ParallelGeometryConverter.placeholder(hex("POLYGON((0 0,1 0,1 1,0 0))"));
+        ParallelGeometryConverter.fill(target,
+                FeatureConverter.toGeometry("{\"type\":\"LineString\",\"coordinates\":[[0,0],[1,1]]}"));
+    }
+
+    @Test
+    public void testDeferReturnsPlaceholder() throws SQLException {
+        ParallelGeometryConverter converter = new ParallelGeometryConverter(1, 10, 10, null);
+        try {
+            ParallelGeometryConverter.Batch previous = converter.begin();
+            Assert.assertTrue(converter.isDeferring());
+            Geometry deferred = converter.defer(hex("POLYGON((0 0,1 0,1 1,0 0))"));
+            Assert.assertTrue(deferred instanceof Polygon);
+            Assert.assertTrue(deferred.getGeometry().isEmpty());
+
+            ParallelGeometryConverter.Batch deferring = converter.suspend();
+            Assert.assertFalse(converter.isDeferring());
+            converter.end(deferring);
+            Assert.assertTrue(converter.isDeferring());
+
+            converter.end(previous);
+            Assert.assertFalse(converter.isDeferring());
+        } finally {
+            converter.shutdown();
+        }
+    }
+
+    @Test
+    public void testCompleteInParallelKeepsOrder() throws SQLException {
+        ParallelGeometryConverter converter = new ParallelGeometryConverter(4, 10, 3, null);
+        try {
+            ParallelGeometryConverter.Batch previous = converter.begin();
+            List<Geometry> deferred = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                deferred.add(converter.defer(hex("POLYGON((" + i + " 0," + (i + 1) + " 0," + (i + 1) + " 1," + i + " 0))")));
+            }
+            deferred.add(converter.defer(hex("POINT(7 8)")));
+            Assert.assertTrue(deferred.get(0).getGeometry().isEmpty());
+
+            converter.complete();
+            converter.end(previous);
+
+            for (int i = 0; i < 50; i++) {
+                List<Position> ring = ((Polygon) deferred.get(i)).getCoordinates().get(0);
+                Assert.assertEquals(4, ring.size());
+                Assert.assertEquals(i, ring.get(0).getX(), 0);
+                Assert.assertEquals(i + 1, ring.get(1).getX(), 0);
+            }
+            Assert.assertEquals(8.0, ((Point) deferred.get(50)).getCoordinates().getY(), 0);
+        } finally {
+            converter.shutdown();
+        }
+    }
+
+    @Test
+    public void testCompleteBelowThreshold() throws SQLException {
+        ParallelGeometryConverter converter = new ParallelGeometryConverter(4, 10, 3, null);
+        try {
+            ParallelGeometryConverter.Batch previous = converter.begin();
+            Geometry line = converter.defer(hex("LINESTRING(0 0,1 1,2 4)"));
+            converter.complete();
+            converter.end(previous);
+            Assert.assertEquals(3, ((LineString) line).getCoordinates().size());
+            Assert.assertEquals(4.0, ((LineString) line).getCoordinates().get(2).getY(), 0);
+        } finally {
+            converter.shutdown();
+        }
+    }
+
+    @Test(expected = SQLException.class)
+    public void testCompleteInParallelWrapsFailure() throws SQLException {
+        ParallelGeometryConverter converter = new ParallelGeometryConverter(2, 2, 1, null);
+        try {
+            ParallelGeometryConverter.Batch previous = converter.begin();
+            converter.defer(hex("POINT(1 2)"));
+            // 头部为合法的POLYGON，坐标被截断
+            converter.defer("0103000000ffffff");
+            try {
+                converter.complete();
+            } finally {
+                converter.end(previous);
+            }
+        } finally {
+            converter.shutdown();
+        }
+    }
+
+    private static String hex(String wkt) throws SQLException {
+        return new BinaryWriter().writeHexed(PGgeometry.geomFromString(wkt));
+    }
+}
@@ -0,0 +1,78 @@
+package alanna.salamander.data.tile;
+
+import mil.nga.sf.geojson.FeatureConverter;
+import mil.nga.sf.geojson.Geometry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * test for spatial query cache
+ *
+ * @author alanna
+ * @since 0.1
+ */
+public class SpatialQueryCacheTest {
+
+    /**
+     * 不使用Redis，走瓦片缓存时会抛出NullPointerException
+     */
+    private final SpatialQueryCache cache = newCache();
+
+    private final List<double[]> loaded = new ArrayList<>();
+
+    private final Map<Object, Geometry> antarctic = new HashMap<>();
+
+    {
+        antarctic.put(1L, FeatureConverter.toGeometry("{\"type\":\"Point\",\"coordinates\":[0.005,-88]}"));
+        antarctic.put(2L, FeatureConverter.toGeometry("{\"type\":\"Point\",\"coordinates\":[0.005,-87]}"));
+        antarctic.put(3L, FeatureConverter.toGeometry("{\"type\":\"Point\",\"coordinates\":[0.005,-85.05]}"));
+    }
+
+    @Test
+    public void testBeyondMercatorLatitudeQueriesLoader() {
+        double[] bbox = {0, -89, 0.01, -86};
+        Map<String, String> features = cache.queryEncoded("poi", bbox, envelope -> {
+            loaded.add(envelope);
+            return antarctic;
+        });
+
+        Assert.assertEquals(1, loaded.size());
+        Assert.assertArrayEquals(bbox, loaded.get(0), 0);
+        Assert.assertEquals(2, features.size());
+        Assert.assertTrue(features.containsKey("1"));
+        Assert.assertTrue(features.containsKey("2"));
+    }
+
+    @Test
+    public void testBeyondAntimeridianQueriesLoader() {
+        double[] bbox = {179.99, 0, 180.01, 0.01};
+        cache.queryEncoded("poi", bbox, envelope -> {
+            loaded.add(envelope);
+            return new HashMap<>();
+        });
+
+        Assert.assertEquals(1, loaded.size());
+        Assert.assertArrayEquals(bbox, loaded.get(0), 0);
+    }
+
+    private static SpatialQueryCache newCache() {
+        SpatialQueryCache cache = new SpatialQueryCache(null);
+        try {
+            Field zoom = SpatialQueryCache.class.getDeclaredField("zoom");
+            zoom.setAccessible(true);
+            zoom.setInt(cache, 14);
+            Field maxTiles = SpatialQueryCache.class.getDeclaredField("maxTiles");
+            maxTiles.setAccessible(true);
+            maxTiles.setInt(cache, 256);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+        return cache;
+    }
+}
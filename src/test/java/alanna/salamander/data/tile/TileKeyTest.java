@@ -0,0 +1,102 @@
+package alanna.salamander.data.tile;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * test for tile key
+ *
+ * @author alanna
+ * @since 0.1
+ */
+public class TileKeyTest {
+
+    private static final double DELTA = 1e-9;
+
+    private static final double MAX_LATITUDE = 85.0511287798066;
+
+    @Test
+    public void testLonLatEnvelopeOfWorldTile() {
+        double[] envelope = new TileKey(0, 0, 0).getLonLatEnvelope();
+        Assert.assertArrayEquals(new double[]{-180, -MAX_LATITUDE, 180, MAX_LATITUDE}, envelope, DELTA);
+    }
+
+    @Test
+    public void testLonLatEnvelopeOfZoomOneTiles() {
+        Assert.assertArrayEquals(new double[]{-180, 0, 0, MAX_LATITUDE}, new TileKey(1, 0, 0).getLonLatEnvelope(), DELTA);
+        Assert.assertArrayEquals(new double[]{0, -MAX_LATITUDE, 180, 0}, new TileKey(1, 1, 1).getLonLatEnvelope(), DELTA);
+    }
+
+    @Test
+    public void testLonLatEnvelopeMatchesMercatorEnvelope() {
+        TileKey tile = new TileKey(14, 13487, 6208);
+        double[] lonLat = tile.getLonLatEnvelope();
+        double[] mercator = tile.getEnvelope();
+        Assert.assertEquals(mercator[0], lonLat[0] * 20037508.342789244 / 180, 1e-6);
+        Assert.assertEquals(mercator[2], lonLat[2] * 20037508.342789244 / 180, 1e-6);
+        double y = Math.log(Math.tan(Math.PI / 4 + Math.toRadians(lonLat[3]) / 2)) * 20037508.342789244 / Math.PI;
+        Assert.assertEquals(mercator[3], y, 1e-6);
+    }
+
+    @Test
+    public void testCoveringSinglePoint() {
+        List<TileKey> tiles = TileKey.covering(14, 116.35, 39.90, 116.35, 39.90);
+        Assert.assertEquals(1, tiles.size());
+        double[] envelope = tiles.get(0).getLonLatEnvelope();
+        Assert.assertTrue(envelope[0] <= 116.35 && 116.35 < envelope[2]);
+        Assert.assertTrue(envelope[1] <= 39.90 && 39.90 < envelope[3]);
+    }
+
+    @Test
+    public void testCoveringIsRowMajorAndCoversEnvelope() {
+        double[] bbox = {116.30, 39.90, 116.40, 39.92};
+        List<TileKey> tiles = TileKey.covering(14, bbox[0], bbox[1], bbox[2], bbox[3]);
+        Assert.assertEquals(TileKey.coveringCount(14, bbox[0], bbox[1], bbox[2], bbox[3]), tiles.size());
+        for (int i = 1; i < tiles.size(); i++) {
+            TileKey previous = tiles.get(i - 1);
+            TileKey current = tiles.get(i);
+            Assert.assertTrue(current.getY() > previous.getY()
+                    || (current.getY() == previous.getY() && current.getX() == previous.getX() + 1));
+        }
+        double[] first = tiles.get(0).getLonLatEnvelope();
+        double[] last = tiles.get(tiles.size() - 1).getLonLatEnvelope();
+        Assert.assertTrue(first[0] <= bbox[0] && first[3] >= bbox[3]);
+        Assert.assertTrue(last[2] >= bbox[2] && last[1] <= bbox[1]);
+    }
+
+    @Test
+    public void testCoveringClampsToWorld() {
+        List<TileKey> tiles = TileKey.covering(1, -200, -90, 200, 90);
+        Assert.assertEquals(4, tiles.size());
+        Assert.assertEquals(new TileKey(1, 0, 0), tiles.get(0));
+        Assert.assertEquals(new TileKey(1, 1, 1), tiles.get(3));
+    }
+
+    @Test
+    public void testWithinGrid() {
+        Assert.assertTrue(TileKey.withinGrid(116.30, 39.90, 116.40, 39.92));
+        Assert.assertTrue(TileKey.withinGrid(-180, -MAX_LATITUDE, 180, MAX_LATITUDE));
+        Assert.assertFalse(TileKey.withinGrid(0, -89, 0.01, -86));
+        Assert.assertFalse(TileKey.withinGrid(0, 80, 1, 86));
+        Assert.assertFalse(TileKey.withinGrid(179, 0, 181, 1));
+        Assert.assertFalse(TileKey.withinGrid(-181, 0, -179, 1));
+    }
+
+    @Test
+    public void testCoveringCountOfWorldDoesNotOverflow() {
+        Assert.assertEquals(1L << 28, TileKey.coveringCount(14, -180, -90, 180, 90));
+        Assert.assertEquals(1L << 60, TileKey.coveringCount(30, -180, -90, 180, 90));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCoveringTooManyTiles() {
+        TileKey.covering(16, -180, -90, 180, 90);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCoveringInvalidEnvelope() {
+        TileKey.covering(14, 10, 0, -10, 1);
+    }
+}